@@ -0,0 +1,207 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.PeriodicWork;
+import hudson.model.Queue;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Limits how fast and how deep {@link FireDispatcher} may fill the Jenkins queue, so that a specification
+ * copied into hundreds of jobs cannot bury the controller.
+ * <p>
+ * Requests are admitted as long as a token bucket refilled at {@link #RATE} builds per second (up to
+ * {@link #BURST}) has tokens left and the queue holds fewer than {@link #MAX_QUEUE} items, of which fewer than
+ * {@link #MAX_BUILDABLE} are buildable. The other requests wait in a holding buffer of up to
+ * {@link #HOLD_CAPACITY} requests, oldest first, which is drained every few seconds as capacity frees up; requests
+ * arriving at a full buffer are dropped. Every limit is off by default.
+ */
+@Extension
+public class AdmissionControl {
+	private static final Logger LOGGER = Logger.getLogger(AdmissionControl.class.getName());
+
+	/**
+	 * Builds admitted per second on average, 0 for no limit.
+	 */
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static double RATE = Double.parseDouble(SystemProperties.getString(AdmissionControl.class.getName() + ".rate", "0"));
+
+	/**
+	 * Builds admitted at once after an idle period, when {@link #RATE} is set.
+	 */
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static int BURST = SystemProperties.getInteger(AdmissionControl.class.getName() + ".burst", 100);
+
+	/**
+	 * Queue length above which no more builds are admitted, 0 for no limit.
+	 */
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static int MAX_QUEUE = SystemProperties.getInteger(AdmissionControl.class.getName() + ".maxQueue", 0);
+
+	/**
+	 * Number of buildable queue items above which no more builds are admitted, 0 for no limit.
+	 */
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static int MAX_BUILDABLE = SystemProperties.getInteger(AdmissionControl.class.getName() + ".maxBuildable", 0);
+
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static int HOLD_CAPACITY = SystemProperties.getInteger(AdmissionControl.class.getName() + ".holdCapacity", 10000);
+
+	private final Deque<FireRequest> held = new ArrayDeque<>();
+	private double tokens = Double.NaN;
+	private long lastRefill;
+
+	private final AtomicLong deferred = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong released = new AtomicLong();
+
+	public static AdmissionControl get() {
+		return ExtensionList.lookupSingleton(AdmissionControl.class);
+	}
+
+	/**
+	 * Picks the requests that may go to the queue now, the ones held from earlier calls first.
+	 *
+	 * @param requests the new requests, the ones not admitted are held or dropped
+	 * @return the requests to schedule, in order
+	 */
+	@NonNull
+	synchronized List<FireRequest> admit(@NonNull List<FireRequest> requests) {
+		if (held.isEmpty() && !isLimited()) {
+			return requests;
+		}
+		int capacity = capacity(held.size() + requests.size());
+		List<FireRequest> admitted = new ArrayList<>(Math.min(capacity, held.size() + requests.size()));
+		while (admitted.size() < capacity && !held.isEmpty()) {
+			admitted.add(held.poll());
+			released.incrementAndGet();
+		}
+		for (FireRequest request : requests) {
+			if (admitted.size() < capacity) {
+				admitted.add(request);
+			} else if (held.size() < HOLD_CAPACITY) {
+				held.add(request);
+				deferred.incrementAndGet();
+			} else {
+				dropped.incrementAndGet();
+				LOGGER.log(Level.WARNING, "Dropped scheduled build of {0}, {1} builds are held back already",
+						new Object[] {request, held.size()});
+			}
+		}
+		if (!Double.isNaN(tokens) && RATE > 0) {
+			tokens -= admitted.size();
+		}
+		if (!held.isEmpty()) {
+			LOGGER.log(Level.FINE, "Holding back {0} scheduled builds", held.size());
+		}
+		return admitted;
+	}
+
+	private static boolean isLimited() {
+		return RATE > 0 || MAX_QUEUE > 0 || MAX_BUILDABLE > 0;
+	}
+
+	/**
+	 * @return how many of the wanted builds may be scheduled now
+	 */
+	private int capacity(int wanted) {
+		int capacity = wanted;
+		if (RATE > 0) {
+			long now = System.nanoTime();
+			if (Double.isNaN(tokens)) {
+				tokens = BURST;
+			} else {
+				tokens = Math.min(BURST, tokens + RATE * (now - lastRefill) / TimeUnit.SECONDS.toNanos(1));
+			}
+			lastRefill = now;
+			capacity = Math.min(capacity, (int) Math.max(0, tokens));
+		} else {
+			tokens = Double.NaN;
+		}
+		if (MAX_QUEUE > 0 || MAX_BUILDABLE > 0) {
+			Queue queue = Queue.getInstance();
+			if (MAX_QUEUE > 0) {
+				capacity = Math.min(capacity, Math.max(0, MAX_QUEUE - queue.getApproximateItemsQuickly().size()));
+			}
+			if (MAX_BUILDABLE > 0) {
+				capacity = Math.min(capacity, Math.max(0, MAX_BUILDABLE - queue.countBuildableItems()));
+			}
+		}
+		return capacity;
+	}
+
+	/**
+	 * @return true if the request is waiting for capacity
+	 */
+	synchronized boolean holds(@NonNull FireRequest request) {
+		return held.contains(request);
+	}
+
+	synchronized boolean hasHeld() {
+		return !held.isEmpty();
+	}
+
+	/**
+	 * @return number of requests waiting for capacity
+	 */
+	public synchronized int getHeld() {
+		return held.size();
+	}
+
+	/**
+	 * @return number of requests that had to wait for capacity
+	 */
+	public long getDeferred() {
+		return deferred.get();
+	}
+
+	/**
+	 * @return number of held requests that were scheduled eventually
+	 */
+	public long getReleased() {
+		return released.get();
+	}
+
+	/**
+	 * @return number of requests dropped because the holding buffer was full
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Schedules held requests as capacity frees up.
+	 */
+	@Extension
+	public static class Drainer extends PeriodicWork {
+		@Override
+		public long getRecurrencePeriod() {
+			return TimeUnit.SECONDS.toMillis(5);
+		}
+
+		@Override
+		protected void doRun() {
+			if (AdmissionControl.get().hasHeld() || LabelCapacity.get().hasHeld() || FairShare.get().hasHeld()) {
+				FireDispatcher.get().drain();
+			}
+		}
+	}
+}
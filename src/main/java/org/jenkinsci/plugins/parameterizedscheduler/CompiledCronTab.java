@@ -0,0 +1,185 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.scheduler.CronTab;
+
+import java.lang.reflect.Field;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link CronTab} reduced to one bitmask per field, with any {@code H} already resolved by the hash the
+ * crontab was parsed with. Matching against {@link CronFields} is a handful of bit tests and allocates nothing.
+ * <p>
+ * The next fire time is computed from the bitmasks as well, see {@link #ceil(long)}.
+ * <p>
+ * Instances are interned: lines of any job that resolve to the same fields in the same timezone share one
+ * instance, which {@link NextFireIndex} uses to evaluate each distinct schedule only once per tick.
+ */
+final class CompiledCronTab {
+	private static final Logger LOGGER = Logger.getLogger(CompiledCronTab.class.getName());
+
+	/**
+	 * {@link CronTab} keeps its resolved fields package private and offers no accessor, so they are read once
+	 * per line at parse time. If that ever stops working the callers fall back to {@link CronTab} itself.
+	 */
+	private static final Field BITS = field("bits");
+	private static final Field DAY_OF_WEEK = field("dayOfWeek");
+	private static final Interner<CompiledCronTab> INTERNER = Interners.newWeakInterner();
+	private static final int MINUTES_PER_DAY = 24 * 60;
+	/**
+	 * how far {@link #ceil(long)} looks ahead before giving up on a rare or impossible date
+	 */
+	private static final long HORIZON = TimeUnit.DAYS.toMinutes(2 * 366);
+
+	final long minutes;
+	final long hours;
+	final long daysOfMonth;
+	final long months;
+	final int daysOfWeek;
+	@CheckForNull
+	final String timezone;
+
+	CompiledCronTab(long minutes, long hours, long daysOfMonth, long months, int daysOfWeek, @CheckForNull String timezone) {
+		this.minutes = minutes;
+		this.hours = hours;
+		this.daysOfMonth = daysOfMonth;
+		this.months = months;
+		// both 0 and 7 stand for Sunday
+		this.daysOfWeek = (daysOfWeek & (1 << 7)) != 0 ? (daysOfWeek | 1) & ~(1 << 7) : daysOfWeek;
+		this.timezone = timezone;
+	}
+
+	/**
+	 * @param timezone the timezone the crontab was created with, null for the default timezone
+	 * @return the interned compiled form, or null if the fields of the crontab are not accessible
+	 */
+	@CheckForNull
+	static CompiledCronTab compile(@NonNull CronTab cronTab, @CheckForNull String timezone) {
+		if (BITS == null || DAY_OF_WEEK == null) {
+			return null;
+		}
+		try {
+			long[] bits = (long[]) BITS.get(cronTab);
+			return of(bits[0], bits[1], bits[2], bits[3], DAY_OF_WEEK.getInt(cronTab), timezone);
+		} catch (IllegalAccessException | RuntimeException e) {
+			LOGGER.log(Level.FINE, "Failed to compile " + cronTab, e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return the interned instance with the given fields
+	 */
+	@NonNull
+	static CompiledCronTab of(long minutes, long hours, long daysOfMonth, long months, int daysOfWeek, @CheckForNull String timezone) {
+		return INTERNER.intern(new CompiledCronTab(minutes, hours, daysOfMonth, months, daysOfWeek, timezone));
+	}
+
+	/**
+	 * @param fields the minute to check, in the timezone of the crontab
+	 */
+	boolean matches(@NonNull CronFields fields) {
+		return (minutes & (1L << fields.minute)) != 0
+				&& (hours & (1L << fields.hour)) != 0
+				&& (daysOfMonth & (1L << fields.dayOfMonth)) != 0
+				&& (months & (1L << fields.month)) != 0
+				&& (daysOfWeek & (1 << fields.dayOfWeek)) != 0;
+	}
+
+	/**
+	 * Computes the first minute, at or after the given one, whose fields in the timezone of this crontab match, the
+	 * way {@link #matches(CronFields)} would see them tick after tick. So local minutes skipped when clocks go
+	 * forward never fire, and local minutes repeated when clocks go back fire twice.
+	 * <p>
+	 * Between two transitions of the zone the offset is fixed, so local minutes map one to one to epoch minutes and
+	 * the search runs on local fields only, one offset at a time.
+	 *
+	 * @param epochMinute minutes since the epoch
+	 * @return minutes since the epoch, or {@link ParameterizedCronTab#NEVER} if nothing matches within two years
+	 */
+	long ceil(long epochMinute) {
+		ZoneRules rules = CronFields.zone(timezone).getRules();
+		long limit = epochMinute + HORIZON;
+		for (long from = epochMinute; from < limit; ) {
+			Instant instant = Instant.ofEpochSecond(TimeUnit.MINUTES.toSeconds(from));
+			// the local minute of an epoch minute is that minute plus the whole minutes of the offset
+			long shift = Math.floorDiv(rules.getOffset(instant).getTotalSeconds(), 60);
+			ZoneOffsetTransition transition = rules.nextTransition(instant);
+			long until = transition == null ? limit
+					: Math.min(limit, Math.floorDiv(transition.toEpochSecond() + 59, 60));
+			long local = nextLocal(from + shift, until + shift);
+			if (local != -1) {
+				return local - shift;
+			}
+			from = until;
+		}
+		return ParameterizedCronTab.NEVER;
+	}
+
+	/**
+	 * @param from the first local minute to consider, in minutes since the local epoch
+	 * @param until the local minute to stop at, excluded
+	 * @return the first local minute in that range matching every field, -1 if none does
+	 */
+	private long nextLocal(long from, long until) {
+		long day = Math.floorDiv(from, MINUTES_PER_DAY);
+		int start = (int) Math.floorMod(from, MINUTES_PER_DAY);
+		for (; day * MINUTES_PER_DAY < until; day++, start = 0) {
+			// the local epoch was a Thursday
+			if ((daysOfWeek & (1 << (int) Math.floorMod(day + 4, 7))) == 0) {
+				continue;
+			}
+			LocalDate date = LocalDate.ofEpochDay(day);
+			if ((months & (1L << date.getMonthValue())) == 0 || (daysOfMonth & (1L << date.getDayOfMonth())) == 0) {
+				continue;
+			}
+			for (int hour = start / 60; hour < 24; hour++) {
+				if ((hours & (1L << hour)) == 0) {
+					continue;
+				}
+				long candidates = minutes & (-1L << (hour == start / 60 ? start % 60 : 0));
+				if (candidates != 0) {
+					long local = day * MINUTES_PER_DAY + hour * 60 + Long.numberOfTrailingZeros(candidates);
+					return local < until ? local : -1;
+				}
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		CompiledCronTab that = (CompiledCronTab) o;
+		return minutes == that.minutes && hours == that.hours && daysOfMonth == that.daysOfMonth
+				&& months == that.months && daysOfWeek == that.daysOfWeek && Objects.equals(timezone, that.timezone);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(minutes, hours, daysOfMonth, months, daysOfWeek, timezone);
+	}
+
+	@CheckForNull
+	private static Field field(String name) {
+		try {
+			Field field = CronTab.class.getDeclaredField(name);
+			field.setAccessible(true);
+			return field;
+		} catch (NoSuchFieldException | RuntimeException e) {
+			LOGGER.log(Level.FINE, "CronTab." + name + " is not accessible, crontabs will not be compiled", e);
+			return null;
+		}
+	}
+}
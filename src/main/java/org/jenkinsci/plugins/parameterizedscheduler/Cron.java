@@ -1,15 +1,32 @@
 package org.jenkinsci.plugins.parameterizedscheduler;
 
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.Extension;
-import hudson.model.AbstractProject;
+import hudson.init.Terminator;
 import hudson.model.AperiodicWork;
-import hudson.triggers.Trigger;
-import jenkins.model.Jenkins;
-import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import hudson.model.Job;
+import hudson.security.ACL;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.ParameterizedJobMixIn;
+import jenkins.security.ImpersonatingExecutorService;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 
+import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collection;
-import java.util.GregorianCalendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -20,6 +37,24 @@ public class Cron extends AperiodicWork {
 	// time constants
 	protected static final long MIN = 1000 * 60;
 
+	/**
+	 * Number of threads running due triggers in parallel. 0, the default, runs them one after the other on the
+	 * Cron thread.
+	 */
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static int PARALLELISM = SystemProperties.getInteger(Cron.class.getName() + ".parallelism", 0);
+
+	/**
+	 * Milliseconds after which a tick that is still running triggers logs the stragglers.
+	 */
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static long TICK_DEADLINE = SystemProperties.getLong(Cron.class.getName() + ".tickDeadline", TimeUnit.SECONDS.toMillis(50));
+
+	private static ExecutorService executor;
+	private static int executorParallelism;
+
 	@Override
 	public AperiodicWork getNewInstance() {
 		return new Cron();
@@ -37,33 +72,135 @@ public class Cron extends AperiodicWork {
 
 	@Override
 	protected void doAperiodicRun() {
-		Jenkins instance = Jenkins.get();
+		ParameterizedTriggerRegistry registry = ParameterizedTriggerRegistry.get();
+		FireJournal journal = FireJournal.get();
+		long[] minutes = MinuteTracker.get().claim(ParameterizedTriggerRegistry.currentMinute());
+		if (minutes.length == 0) {
+			return;
+		}
+		// schedules compiled in the background at startup have to be registered before the poll, within reason
+		StartupCompilation.get().awaitPending(StartupCompilation.TICK_WAIT);
+		Map<ParameterizedTimerTrigger, List<ParameterizedCronTab>> due = new LinkedHashMap<>(journal.catchUp(minutes[0], registry.getTriggers()));
+		for (long epochMinute : minutes) {
+			registry.poll(epochMinute).forEach((trigger, cronTabs) -> {
+				String projectName = trigger.getJob().getFullName();
+				for (ParameterizedCronTab cronTab : cronTabs) {
+					if (journal.claim(projectName, cronTab, epochMinute)) {
+						due.computeIfAbsent(trigger, t -> new ArrayList<>()).add(cronTab);
+					}
+				}
+			});
+		}
+
+		FireDispatcher.Batch batch = FireDispatcher.get().newBatch();
+		List<Runnable> work = new ArrayList<>();
+		Set<String> pending = ConcurrentHashMap.newKeySet();
+		due.forEach((trigger, cronTabs) -> {
+			if (!ParameterizedTriggerRegistry.isCurrent(trigger)) {
+				// replaced or removed without being stopped
+				registry.unregister(trigger);
+				return;
+			}
+			Job<?, ?> job = trigger.getJob();
+			if (((ParameterizedJobMixIn.ParameterizedJob<?, ?>) job).isDisabled()) {
+				return;
+			}
+			String projectName = job.getFullName();
+			pending.add(projectName);
+			work.add(() -> {
+				if (runTrigger(projectName, trigger, cronTabs, batch)) {
+					journal.commit(projectName, cronTabs);
+				}
+				pending.remove(projectName);
+			});
+		});
+
+		long deadline = System.currentTimeMillis() + TICK_DEADLINE;
+		int parallelism = PARALLELISM;
+		if (parallelism > 0 && work.size() > 1) {
+			runInParallel(work, parallelism, deadline);
+		} else {
+			work.forEach(Runnable::run);
+		}
+		batch.submit();
+		// only once the builds are submitted, so that a crash in between repeats them rather than losing them
+		journal.flush(minutes[minutes.length - 1]);
+		if (!pending.isEmpty()) {
+			LOGGER.log(Level.WARNING, "Parameterized schedule tick exceeded {0}ms, still running: {1}",
+					new Object[] {TICK_DEADLINE, pending});
+		} else if (System.currentTimeMillis() > deadline) {
+			LOGGER.log(Level.WARNING, "Parameterized schedule tick exceeded {0}ms for {1} jobs",
+					new Object[] {TICK_DEADLINE, work.size()});
+		}
+	}
 
-		for (AbstractProject<?, ?> project : instance.allItems(AbstractProject.class)) {
-			checkTriggers(project.getName(), project.getTriggers().values(), new GregorianCalendar());
+	/**
+	 * Splits the work in a few chunks per thread, so that one slow trigger only holds up its own chunk, and
+	 * waits for them until the deadline. Chunks still running then are left to finish on their own.
+	 */
+	private static void runInParallel(List<Runnable> work, int parallelism, long deadline) {
+		ExecutorService pool = executor(parallelism);
+		int chunkSize = Math.max(1, (work.size() + parallelism * 4 - 1) / (parallelism * 4));
+		List<Future<?>> futures = new ArrayList<>();
+		for (int from = 0; from < work.size(); from += chunkSize) {
+			List<Runnable> chunk = work.subList(from, Math.min(work.size(), from + chunkSize));
+			futures.add(pool.submit(() -> chunk.forEach(Runnable::run)));
 		}
+		for (Future<?> future : futures) {
+			try {
+				future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				return;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				// runTrigger already isolates failures, this is not expected
+				LOGGER.log(Level.WARNING, "Parameterized schedule chunk failed", e);
+			}
+		}
+	}
 
-		for (WorkflowJob workflowJob : instance.allItems(WorkflowJob.class)) {
-			checkTriggers(workflowJob.getName(), workflowJob.getTriggers().values(), new GregorianCalendar());
+	private static synchronized ExecutorService executor(int parallelism) {
+		if (executor == null || executorParallelism != parallelism) {
+			if (executor != null) {
+				executor.shutdown();
+			}
+			executor = new ImpersonatingExecutorService(Executors.newFixedThreadPool(parallelism,
+					new NamingThreadFactory(new DaemonThreadFactory(), Cron.class.getName())), ACL.SYSTEM2);
+			executorParallelism = parallelism;
 		}
+		return executor;
 	}
 
-	private void checkTriggers(String projectName, Collection<Trigger<?>> triggers, Calendar calendar) {
+	/**
+	 * Stops the threads of {@link #PARALLELISM}, which would otherwise outlive this Jenkins, e.g. across restarts
+	 * in the same JVM. The next tick starts new ones if needed.
+	 */
+	@Terminator
+	public static synchronized void shutdownExecutor() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
 
-		for (Trigger<?> trigger : triggers) {
-			if (trigger instanceof ParameterizedTimerTrigger) {
-				LOGGER.log(Level.FINE, "cron checking {0}", projectName);
-				ParameterizedTimerTrigger ptTrigger = (ParameterizedTimerTrigger) trigger;
+	/**
+	 * @return false if the trigger failed
+	 */
+	private static boolean runTrigger(String projectName, ParameterizedTimerTrigger trigger, List<ParameterizedCronTab> cronTabs,
+			FireDispatcher.Batch batch) {
+		LOGGER.log(Level.FINE, "cron running {0}", projectName);
 
-				try {
-					ptTrigger.checkCronTabsAndRun(calendar);
-				} catch (Throwable e) {
-					// t.run() is a plugin, and some of them throw RuntimeException and other things.
-					// don't let that cancel the polling activity. report and move on.
-					LOGGER.log(Level.WARNING,
-							trigger.getClass().getName() + ".run() failed for " + projectName, e);
-				}
-			}
+		try {
+			trigger.run(cronTabs, batch);
+			return true;
+		} catch (Throwable e) {
+			// t.run() is a plugin, and some of them throw RuntimeException and other things.
+			// don't let that cancel the polling activity. report and move on.
+			LOGGER.log(Level.WARNING,
+					trigger.getClass().getName() + ".run() failed for " + projectName, e);
+			return false;
 		}
 	}
 
@@ -0,0 +1,88 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import com.google.common.cache.CacheBuilder;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import jenkins.util.SystemProperties;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Calendar;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The calendar fields of one minute in one timezone, computed once and then matched against any number of
+ * {@link CompiledCronTab}s without touching a {@link Calendar} again.
+ */
+final class CronFields {
+
+	private static final int ZONE_CAPACITY = SystemProperties.getInteger(CronFields.class.getName() + ".zoneCapacity", 100);
+	/**
+	 * bounded, since the ids come from whatever {@code TZ=} lines were ever configured
+	 */
+	private static final Map<String, ZoneId> ZONES = CacheBuilder.newBuilder().maximumSize(ZONE_CAPACITY).<String, ZoneId>build().asMap();
+
+	final long epochMinute;
+	final int minute;
+	final int hour;
+	final int dayOfMonth;
+	/**
+	 * 1 to 12, as in crontab
+	 */
+	final int month;
+	/**
+	 * 0 (Sunday) to 6, as in crontab
+	 */
+	final int dayOfWeek;
+
+	private CronFields(long epochMinute, LocalDateTime local) {
+		this.epochMinute = epochMinute;
+		this.minute = local.getMinute();
+		this.hour = local.getHour();
+		this.dayOfMonth = local.getDayOfMonth();
+		this.month = local.getMonthValue();
+		this.dayOfWeek = local.getDayOfWeek().getValue() % 7;
+	}
+
+	/**
+	 * @param epochMinute minutes since the epoch
+	 * @param timeZone the zone to read the fields in
+	 */
+	@NonNull
+	static CronFields of(long epochMinute, @NonNull TimeZone timeZone) {
+		return of(epochMinute, timeZone.toZoneId());
+	}
+
+	/**
+	 * Reads the fields at the offset the zone has at that instant, so daylight saving time is taken into account
+	 * exactly where the zone rules put the transitions.
+	 *
+	 * @param epochMinute minutes since the epoch
+	 * @param zone the zone to read the fields in
+	 */
+	@NonNull
+	static CronFields of(long epochMinute, @NonNull ZoneId zone) {
+		long epochSecond = TimeUnit.MINUTES.toSeconds(epochMinute);
+		ZoneOffset offset = zone.getRules().getOffset(Instant.ofEpochSecond(epochSecond));
+		return new CronFields(epochMinute, LocalDateTime.ofEpochSecond(epochSecond, 0, offset));
+	}
+
+	/**
+	 * @param timezone as in {@code TZ=}, null for the default timezone
+	 */
+	@NonNull
+	static ZoneId zone(@CheckForNull String timezone) {
+		// TimeZone knows the legacy ids that ZoneId.of rejects
+		return timezone == null ? TimeZone.getDefault().toZoneId()
+				: ZONES.computeIfAbsent(timezone, id -> TimeZone.getTimeZone(id).toZoneId());
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d %d %d %d %d", minute, hour, dayOfMonth, month, dayOfWeek);
+	}
+}
@@ -20,6 +20,8 @@ import org.kohsuke.stapler.verb.POST;
 @Extension @Symbol("parameterizedCron")
 public class DescriptorImpl extends TriggerDescriptor {
 
+	private final transient SpecificationValidator validator = new SpecificationValidator();
+
 	/**
 	 * I don't like inner classes. Using the declaritive support here by calling super constructor with class.
 	 */
@@ -47,30 +49,12 @@ public class DescriptorImpl extends TriggerDescriptor {
 	}
 
 	/**
-	 * Performs syntax check.
+	 * Performs syntax check, reporting every problem of every line.
 	 */
 	@POST
 	public FormValidation doCheckParameterizedSpecification(@QueryParameter String value,
 			@AncestorInPath Job<?, ?> job) {
 		job.checkPermission(Item.CONFIGURE);
-		try {
-
-			String msg = ParameterizedCronTabList.create(fixNull(value)).checkSanity();
-			if (msg != null) {
-				return FormValidation.warning(msg);
-			}
-
-			ParametersDefinitionProperty paramDefProp = job.getProperty(ParametersDefinitionProperty.class);
-			msg = new ParameterParser().checkSanity(value, paramDefProp);
-			if (msg != null) {
-				return FormValidation.warning(msg);
-			}
-
-			return FormValidation.ok();
-		} catch (IllegalArgumentException e) {
-			if (value.trim().indexOf('\n') == -1 && value.contains("**"))
-				return FormValidation.error(Messages.ParameterizedTimerTrigger_MissingWhitespace());
-			return FormValidation.error(e.getMessage());
-		}
+		return validator.validate(fixNull(value), job.getProperty(ParametersDefinitionProperty.class));
 	}
 }
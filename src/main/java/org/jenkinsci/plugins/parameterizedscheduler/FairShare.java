@@ -0,0 +1,226 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Extension;
+import hudson.ExtensionList;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Orders the builds handed to the queue round-robin across folders, so that a folder firing thousands of builds
+ * in one minute does not make the builds of every other folder wait behind them.
+ * <p>
+ * Jobs are grouped by the first {@link #DEPTH} segments of their full name, the jobs at a shallower level forming
+ * a group of their own. With {@link #QUOTA} set, a group gets at most that many builds per minute and the
+ * others are held, oldest first, until a later minute has room for them. Like the builds held by
+ * {@link LabelCapacity}, at most {@link AdmissionControl#HOLD_CAPACITY} are held, the ones beyond are dropped.
+ */
+@Extension
+public class FairShare {
+	private static final Logger LOGGER = Logger.getLogger(FairShare.class.getName());
+
+	/**
+	 * Number of item group levels making up a group, 0 to keep the order of evaluation.
+	 */
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static int DEPTH = SystemProperties.getInteger(FairShare.class.getName() + ".depth", 1);
+
+	/**
+	 * Builds per group and minute, 0 for no limit.
+	 */
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static int QUOTA = SystemProperties.getInteger(FairShare.class.getName() + ".quota", 0);
+
+	private final Map<String, Integer> used = new HashMap<>();
+	private long usedMinute;
+	private final Map<String, Deque<FireRequest>> held = new LinkedHashMap<>();
+	private int heldCount;
+
+	private final AtomicLong overQuota = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	public static FairShare get() {
+		return ExtensionList.lookupSingleton(FairShare.class);
+	}
+
+	/**
+	 * @return the requests interleaved across groups, in order of evaluation within a group, and within quota,
+	 * after the ones held from earlier minutes
+	 */
+	@NonNull
+	List<FireRequest> order(@NonNull List<FireRequest> requests) {
+		return order(requests, TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis()));
+	}
+
+	@NonNull
+	synchronized List<FireRequest> order(@NonNull List<FireRequest> requests, long minute) {
+		int depth = DEPTH;
+		int quota = QUOTA;
+		if (quota <= 0 && heldCount == 0 && (depth <= 0 || requests.size() < 2)) {
+			return requests;
+		}
+		List<FireRequest> evaluated = requests;
+		Set<FireRequest> released = Collections.newSetFromMap(new IdentityHashMap<>());
+		if (heldCount > 0) {
+			// the held ones were evaluated first
+			evaluated = new ArrayList<>(heldCount + requests.size());
+			held.values().forEach(evaluated::addAll);
+			released.addAll(evaluated);
+			evaluated.addAll(requests);
+			held.clear();
+			heldCount = 0;
+		}
+		Map<String, Deque<FireRequest>> groups = new LinkedHashMap<>();
+		for (FireRequest request : evaluated) {
+			groups.computeIfAbsent(group(request.job.getFullName(), Math.max(depth, 1)), g -> new ArrayDeque<>()).add(request);
+		}
+		if (quota > 0) {
+			applyQuota(groups, quota, minute, released);
+		}
+		if (depth <= 0 || groups.size() < 2) {
+			List<FireRequest> result = new ArrayList<>(evaluated.size());
+			groups.values().forEach(result::addAll);
+			return depth <= 0 ? keepOrder(evaluated, result) : result;
+		}
+		List<FireRequest> result = new ArrayList<>(evaluated.size());
+		while (!groups.isEmpty()) {
+			for (Iterator<Deque<FireRequest>> it = groups.values().iterator(); it.hasNext(); ) {
+				Deque<FireRequest> group = it.next();
+				result.add(group.poll());
+				if (group.isEmpty()) {
+					it.remove();
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param released the requests held before, which are not counted as over quota again
+	 */
+	private void applyQuota(Map<String, Deque<FireRequest>> groups, int quota, long minute, Set<FireRequest> released) {
+		if (minute != usedMinute) {
+			used.clear();
+			usedMinute = minute;
+		}
+		for (Iterator<Map.Entry<String, Deque<FireRequest>>> it = groups.entrySet().iterator(); it.hasNext(); ) {
+			Map.Entry<String, Deque<FireRequest>> entry = it.next();
+			Deque<FireRequest> group = entry.getValue();
+			int left = quota - used.getOrDefault(entry.getKey(), 0);
+			int over = group.size() - Math.max(0, left);
+			if (over > 0) {
+				// the newest wait, so that the held ones go first next minute
+				Deque<FireRequest> waiting = new ArrayDeque<>(over);
+				for (int i = 0; i < over; i++) {
+					waiting.addFirst(group.pollLast());
+				}
+				hold(entry.getKey(), waiting);
+				overQuota.addAndGet(waiting.stream().filter(request -> !released.contains(request)).count());
+				LOGGER.log(Level.FINE, "Holding {0} scheduled builds of {1} over the quota of {2} per minute",
+						new Object[] {over, entry.getKey().isEmpty() ? "Jenkins" : entry.getKey(), quota});
+			}
+			used.merge(entry.getKey(), group.size(), Integer::sum);
+			if (group.isEmpty()) {
+				it.remove();
+			}
+		}
+	}
+
+	private void hold(String group, Deque<FireRequest> waiting) {
+		for (FireRequest request : waiting) {
+			if (heldCount < AdmissionControl.HOLD_CAPACITY) {
+				held.computeIfAbsent(group, g -> new ArrayDeque<>()).add(request);
+				heldCount++;
+			} else {
+				dropped.incrementAndGet();
+				LOGGER.log(Level.WARNING, "Dropped scheduled build of {0}, {1} builds are held back already",
+						new Object[] {request, heldCount});
+			}
+		}
+	}
+
+	/**
+	 * @return the kept requests in their original order
+	 */
+	private static List<FireRequest> keepOrder(List<FireRequest> requests, List<FireRequest> kept) {
+		if (kept.size() == requests.size()) {
+			return requests;
+		}
+		List<FireRequest> result = new ArrayList<>(requests);
+		result.retainAll(new HashSet<>(kept));
+		return result;
+	}
+
+	/**
+	 * @return the first {@code depth} segments of the full name, fewer for jobs at a shallower level
+	 */
+	static String group(String fullName, int depth) {
+		int end = -1;
+		for (int i = 0; i < depth; i++) {
+			int slash = fullName.indexOf('/', end + 1);
+			if (slash < 0) {
+				break;
+			}
+			end = slash;
+		}
+		return end < 0 ? "" : fullName.substring(0, end);
+	}
+
+	synchronized boolean hasHeld() {
+		return heldCount > 0;
+	}
+
+	/**
+	 * @return true if the request is waiting for a later minute
+	 */
+	synchronized boolean holds(@NonNull FireRequest request) {
+		for (Deque<FireRequest> waiting : held.values()) {
+			if (waiting.contains(request)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return number of requests waiting for a later minute
+	 */
+	public synchronized int getHeld() {
+		return heldCount;
+	}
+
+	/**
+	 * @return number of builds that had to wait for a later minute for exceeding {@link #QUOTA}
+	 */
+	public long getOverQuota() {
+		return overQuota.get();
+	}
+
+	/**
+	 * @return number of requests dropped because too many were held back
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+}
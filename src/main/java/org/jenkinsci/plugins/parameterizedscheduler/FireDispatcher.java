@@ -0,0 +1,290 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.init.Terminator;
+import hudson.model.Queue;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Second stage of the fire pipeline: takes the {@link FireRequest}s produced while evaluating schedules and
+ * hands them to the Jenkins queue.
+ * <p>
+ * By default this happens right away on the evaluating thread. With {@link #ASYNC} the requests go through a
+ * bounded buffer drained by a dedicated thread, so that contention on the queue lock no longer stretches the
+ * tick. A full buffer pushes back on evaluation for up to {@link #OFFER_TIMEOUT} milliseconds per batch, after
+ * which the requests that did not fit are dropped. A request whose scheduling throws is retried up to {@link #MAX_ATTEMPTS} times, after the
+ * requests buffered meanwhile, and so are the requests the dispatcher thread drained when one of the stages below
+ * fails. Synchronous dispatch does not retry: it runs on the tick, which would only repeat the same failure a few
+ * milliseconds later while holding up the other jobs, so a failed request is logged and counted instead.
+ * <p>
+ * Requests are handed over in batches, see {@link Batch}: each batch is scheduled under a single
+ * {@link Queue#withLock(Runnable)} section followed by one queue maintenance, instead of taking the queue lock
+ * and triggering maintenance once per build. Before that, {@link FairShare} interleaves them
+ * across folders, and it, {@link LabelCapacity} and {@link AdmissionControl} may hold some of them back.
+ */
+@Extension
+public class FireDispatcher {
+	private static final Logger LOGGER = Logger.getLogger(FireDispatcher.class.getName());
+
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static boolean ASYNC = SystemProperties.getBoolean(FireDispatcher.class.getName() + ".async");
+
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static long OFFER_TIMEOUT = SystemProperties.getLong(FireDispatcher.class.getName() + ".offerTimeout", 1000L);
+
+	/**
+	 * Attempts at scheduling a request with {@link #ASYNC}, synchronous dispatch makes a single one.
+	 */
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static int MAX_ATTEMPTS = SystemProperties.getInteger(FireDispatcher.class.getName() + ".maxAttempts", 3);
+
+	private static final int CAPACITY = SystemProperties.getInteger(FireDispatcher.class.getName() + ".capacity", 10000);
+
+	private final BlockingQueue<FireRequest> buffer = new LinkedBlockingQueue<>(CAPACITY);
+	private Thread thread;
+
+	private final AtomicLong accepted = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong scheduled = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong retried = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+
+	public static FireDispatcher get() {
+		return ExtensionList.lookupSingleton(FireDispatcher.class);
+	}
+
+	/**
+	 * @return a batch collecting the requests of one tick
+	 */
+	@NonNull
+	Batch newBatch() {
+		return new Batch();
+	}
+
+	/**
+	 * Hands over a single request, outside of any batch.
+	 *
+	 * @return false if the request was dropped because the buffer stayed full
+	 */
+	boolean submit(@NonNull FireRequest request) {
+		if (!ASYNC) {
+			accepted.incrementAndGet();
+			dispatchAll(Collections.singletonList(request), null);
+			return true;
+		}
+		return offer(request, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(OFFER_TIMEOUT));
+	}
+
+	/**
+	 * @param deadline {@link System#nanoTime()} until which to wait for room in the buffer
+	 */
+	private boolean offer(FireRequest request, long deadline) {
+		try {
+			if (!buffer.offer(request, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+				dropped.incrementAndGet();
+				LOGGER.log(Level.WARNING, "Dropped scheduled build of {0}, {1} builds are waiting to be queued",
+						new Object[] {request, buffer.size()});
+				return false;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			dropped.incrementAndGet();
+			return false;
+		}
+		accepted.incrementAndGet();
+		ensureStarted();
+		return true;
+	}
+
+	/**
+	 * @param handled collects the requests handed to {@link #dispatch}, null if the caller does not need them
+	 */
+	private void dispatchAll(List<FireRequest> requests, Set<FireRequest> handled) {
+		List<FireRequest> admitted = AdmissionControl.get().admit(LabelCapacity.get().admit(FairShare.get().order(requests)));
+		if (admitted.isEmpty()) {
+			return;
+		}
+		Queue.withLock(() -> admitted.forEach(request -> {
+			dispatch(request);
+			if (handled != null) {
+				handled.add(request);
+			}
+		}));
+		Queue.getInstance().scheduleMaintenance();
+	}
+
+	/**
+	 * Schedules the requests {@link LabelCapacity} and {@link AdmissionControl} held back, as far as they admit
+	 * them now.
+	 */
+	void drain() {
+		dispatchAll(Collections.emptyList(), null);
+	}
+
+	private void dispatch(FireRequest request) {
+		try {
+			if (request.schedule()) {
+				scheduled.incrementAndGet();
+			} else {
+				rejected.incrementAndGet();
+				LOGGER.log(Level.FINE, "{0} did not accept the scheduled build", request);
+			}
+		} catch (RuntimeException e) {
+			if (++request.attempts < MAX_ATTEMPTS && ASYNC && buffer.offer(request)) {
+				retried.incrementAndGet();
+				LOGGER.log(Level.FINE, "Failed to schedule " + request + ", will retry", e);
+			} else {
+				failed.incrementAndGet();
+				LOGGER.log(Level.WARNING, "Failed to schedule " + request, e);
+			}
+		}
+	}
+
+	private synchronized void ensureStarted() {
+		if (thread == null || !thread.isAlive()) {
+			thread = new Thread(this::dispatchLoop, "Parameterized scheduler dispatcher");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	private void dispatchLoop() {
+		try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+			List<FireRequest> requests = new ArrayList<>();
+			while (!Thread.currentThread().isInterrupted()) {
+				requests.add(buffer.take());
+				buffer.drainTo(requests);
+				Set<FireRequest> handled = Collections.newSetFromMap(new IdentityHashMap<>());
+				try {
+					dispatchAll(requests, handled);
+				} catch (RuntimeException e) {
+					// e.g. a stage failing, which must neither stop this thread nor lose what it drained
+					LOGGER.log(Level.WARNING, "Failed to hand " + requests.size() + " scheduled builds to the queue", e);
+					requeue(requests, handled);
+				}
+				requests.clear();
+			}
+		} catch (InterruptedException e) {
+			LOGGER.log(Level.FINE, "Dispatcher stopped with {0} builds pending", buffer.size());
+		}
+	}
+
+	/**
+	 * Puts the requests of a failed dispatch back into the buffer, except for the ones that were scheduled or are
+	 * held by a stage already.
+	 */
+	private void requeue(List<FireRequest> requests, Set<FireRequest> handled) {
+		for (FireRequest request : requests) {
+			if (handled.contains(request) || FairShare.get().holds(request) || LabelCapacity.get().holds(request)
+					|| AdmissionControl.get().holds(request)) {
+				continue;
+			}
+			if (++request.attempts < MAX_ATTEMPTS && buffer.offer(request)) {
+				retried.incrementAndGet();
+			} else {
+				failed.incrementAndGet();
+				LOGGER.log(Level.WARNING, "Failed to schedule {0}", request);
+			}
+		}
+	}
+
+	@Terminator
+	public static void shutdown() {
+		for (FireDispatcher dispatcher : ExtensionList.lookup(FireDispatcher.class)) {
+			synchronized (dispatcher) {
+				if (dispatcher.thread != null) {
+					dispatcher.thread.interrupt();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Collects the requests produced during one tick, possibly from several threads, and hands them over at
+	 * once. Requests added after {@link #submit()} are handed over one by one.
+	 */
+	final class Batch {
+		private final List<FireRequest> requests = new ArrayList<>();
+		private boolean submitted;
+
+		void add(@NonNull FireRequest request) {
+			synchronized (this) {
+				if (!submitted) {
+					requests.add(request);
+					return;
+				}
+			}
+			FireDispatcher.this.submit(request);
+		}
+
+		void submit() {
+			synchronized (this) {
+				submitted = true;
+			}
+			if (!ASYNC) {
+				accepted.addAndGet(requests.size());
+				dispatchAll(requests, null);
+				return;
+			}
+			// one deadline for the whole batch, so that a full buffer holds up the tick once and not per request
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(OFFER_TIMEOUT);
+			for (FireRequest request : requests) {
+				offer(request, deadline);
+			}
+		}
+	}
+
+	/**
+	 * @return number of requests waiting in the buffer
+	 */
+	public int getPending() {
+		return buffer.size();
+	}
+
+	public long getAccepted() {
+		return accepted.get();
+	}
+
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	public long getScheduled() {
+		return scheduled.get();
+	}
+
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	public long getRetried() {
+		return retried.get();
+	}
+
+	public long getFailed() {
+		return failed.get();
+	}
+}
@@ -0,0 +1,316 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.init.Terminator;
+import hudson.model.Job;
+import hudson.util.AtomicFileWriter;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only record of the fires of every line, kept in {@code $JENKINS_HOME/parameterized-scheduler/fires.log}
+ * so that the fires missed while the controller was down can be caught up according to {@link #CATCH_UP}, and so
+ * that a line does not fire twice for the same minute across a quick double restart. The journal is kept whatever
+ * the policy, which only decides what happens to the fires missed, see {@link #catchUp}.
+ * <p>
+ * A tick first {@link #claim}s the minutes of the lines that are due, then {@link #commit}s the lines whose builds
+ * it actually handed to the {@link FireDispatcher}, and {@link #flush}es once they are submitted. Lines skipped
+ * because their job is disabled, or whose trigger failed, are not journaled. Since the build is queued before its
+ * record is written, a crash in between can fire it again after the restart, but never loses it.
+ * <p>
+ * Each fire is one {@code minute TAB line key TAB job} record, each tick adds one {@code minute} marker. Records
+ * are buffered during a tick and written with a single fsync by {@link #flush(long)}. The file is rewritten
+ * every {@link #COMPACT_INTERVAL} ticks to the records still inside the catch up window.
+ */
+@Extension
+public class FireJournal {
+	private static final Logger LOGGER = Logger.getLogger(FireJournal.class.getName());
+
+	public enum CatchUp {
+		/**
+		 * fires missed during downtime are lost, as they always were
+		 */
+		NONE,
+		/**
+		 * each line fires once if it missed any fire
+		 */
+		LATEST,
+		/**
+		 * each line fires once per missed fire
+		 */
+		ALL
+	}
+
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static CatchUp CATCH_UP = catchUp(SystemProperties.getString(FireJournal.class.getName() + ".catchUp"));
+
+	/**
+	 * Only fires missed within this many minutes before the first tick are caught up.
+	 */
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static int CATCH_UP_WINDOW = SystemProperties.getInteger(FireJournal.class.getName() + ".catchUpWindow", 60);
+
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static int COMPACT_INTERVAL = SystemProperties.getInteger(FireJournal.class.getName() + ".compactInterval", 60);
+
+	private final Map<String, Long> lastFired = new HashMap<>();
+	/**
+	 * minutes claimed during the current tick and not committed yet
+	 */
+	private final Map<String, Long> claimed = new HashMap<>();
+	private final StringBuilder pending = new StringBuilder();
+	private long lastMinute = Long.MIN_VALUE;
+	private boolean loaded;
+	private boolean caughtUp;
+	private int ticksSinceCompaction;
+	private FileChannel channel;
+
+	private final AtomicLong suppressed = new AtomicLong();
+	private final AtomicLong caughtUpFires = new AtomicLong();
+
+	public static FireJournal get() {
+		return ExtensionList.lookupSingleton(FireJournal.class);
+	}
+
+	File getFile() {
+		return new File(Jenkins.get().getRootDir(), "parameterized-scheduler/fires.log");
+	}
+
+	/**
+	 * Claims a fire for the current tick, unless the line fired at or after that minute already.
+	 *
+	 * @return true if the line should fire
+	 */
+	synchronized boolean claim(@NonNull String job, @NonNull ParameterizedCronTab cronTab, long epochMinute) {
+		load();
+		String key = key(job, cronTab);
+		Long last = lastFired.get(key);
+		if (last != null && last >= epochMinute) {
+			suppressed.incrementAndGet();
+			LOGGER.log(Level.FINE, "{0} fired at minute {1} already", new Object[] {job, epochMinute});
+			return false;
+		}
+		claimed.merge(key, epochMinute, Math::max);
+		return true;
+	}
+
+	/**
+	 * Records the fires claimed for the given lines of the job, once their builds are handed to the dispatcher.
+	 */
+	synchronized void commit(@NonNull String job, @NonNull Collection<ParameterizedCronTab> cronTabs) {
+		for (ParameterizedCronTab cronTab : cronTabs) {
+			String key = key(job, cronTab);
+			Long minute = claimed.remove(key);
+			if (minute != null) {
+				lastFired.merge(key, minute, Math::max);
+				pending.append(minute).append('\t').append(Long.toHexString(cronTab.getLineKey())).append('\t').append(job).append('\n');
+			}
+		}
+	}
+
+	private static String key(String job, ParameterizedCronTab cronTab) {
+		return job + '\t' + Long.toHexString(cronTab.getLineKey());
+	}
+
+	/**
+	 * On the first call after startup, works out the fires missed since the last minute in the journal.
+	 *
+	 * @param epochMinute the first minute the scheduler evaluates itself
+	 * @return the lines to fire now, by trigger
+	 */
+	@NonNull
+	synchronized Map<ParameterizedTimerTrigger, List<ParameterizedCronTab>> catchUp(long epochMinute,
+			@NonNull Collection<ParameterizedTimerTrigger> triggers) {
+		CatchUp policy = CATCH_UP;
+		load();
+		if (caughtUp || policy == CatchUp.NONE || lastMinute == Long.MIN_VALUE) {
+			caughtUp = true;
+			return Collections.emptyMap();
+		}
+		caughtUp = true;
+		long from = Math.max(lastMinute + 1, epochMinute - CATCH_UP_WINDOW);
+		Map<ParameterizedTimerTrigger, List<ParameterizedCronTab>> result = new LinkedHashMap<>();
+		for (ParameterizedTimerTrigger trigger : triggers) {
+			Job<?, ?> job = trigger.getJob();
+			ParameterizedCronTabList cronTabList = trigger.getCronTabList();
+			if (job == null || cronTabList == null) {
+				continue;
+			}
+			for (ParameterizedCronTab cronTab : cronTabList.getCronTabs()) {
+				boolean missed = false;
+				for (long fire = cronTab.ceil(from); fire < epochMinute; fire = cronTab.ceil(fire + 1)) {
+					if (claim(job.getFullName(), cronTab, fire)) {
+						missed = true;
+						if (policy == CatchUp.ALL) {
+							result.computeIfAbsent(trigger, t -> new ArrayList<>()).add(cronTab);
+						}
+					}
+				}
+				if (missed && policy == CatchUp.LATEST) {
+					result.computeIfAbsent(trigger, t -> new ArrayList<>()).add(cronTab);
+				}
+			}
+		}
+		int count = result.values().stream().mapToInt(List::size).sum();
+		caughtUpFires.addAndGet(count);
+		LOGGER.log(Level.INFO, "Catching up {0} parameterized builds missed since minute {1}", new Object[] {count, from});
+		return result;
+	}
+
+	/**
+	 * Writes the records committed during the tick and a marker for its minute with a single fsync, and forgets the
+	 * claims that were not committed.
+	 */
+	synchronized void flush(long epochMinute) {
+		claimed.clear();
+		load();
+		lastMinute = Math.max(lastMinute, epochMinute);
+		pending.append(epochMinute).append('\n');
+		try {
+			if (channel == null) {
+				File file = getFile();
+				Files.createDirectories(file.getParentFile().toPath());
+				channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			}
+			ByteBuffer buffer = ByteBuffer.wrap(pending.toString().getBytes(StandardCharsets.UTF_8));
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(false);
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to write " + getFile(), e);
+			close();
+		}
+		pending.setLength(0);
+		if (++ticksSinceCompaction >= COMPACT_INTERVAL) {
+			compact(epochMinute);
+		}
+	}
+
+	/**
+	 * Rewrites the journal with only the records still needed to suppress duplicates or to catch up.
+	 */
+	synchronized void compact(long epochMinute) {
+		ticksSinceCompaction = 0;
+		long horizon = epochMinute - Math.max(CATCH_UP_WINDOW, 1);
+		lastFired.values().removeIf(minute -> minute < horizon);
+		close();
+		try {
+			AtomicFileWriter writer = new AtomicFileWriter(getFile().toPath(), StandardCharsets.UTF_8);
+			try {
+				for (Map.Entry<String, Long> entry : lastFired.entrySet()) {
+					int tab = entry.getKey().lastIndexOf('\t');
+					writer.write(entry.getValue() + "\t" + entry.getKey().substring(tab + 1) + '\t' + entry.getKey().substring(0, tab) + '\n');
+				}
+				writer.write(lastMinute + "\n");
+				writer.commit();
+			} finally {
+				writer.abort();
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to compact " + getFile(), e);
+		}
+	}
+
+	private void load() {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+		File file = getFile();
+		if (!file.exists()) {
+			return;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", 3);
+				try {
+					long minute = Long.parseLong(fields[0]);
+					lastMinute = Math.max(lastMinute, minute);
+					if (fields.length == 3) {
+						lastFired.merge(fields[2] + '\t' + fields[1], minute, Math::max);
+					}
+				} catch (NumberFormatException e) {
+					// torn write of a crash, the rest of the journal is still good
+					LOGGER.log(Level.FINE, "Skipping malformed journal record {0}", line);
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to read " + file, e);
+		}
+	}
+
+	private void close() {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				LOGGER.log(Level.FINE, "Failed to close " + getFile(), e);
+			}
+			channel = null;
+		}
+	}
+
+	@Terminator
+	public static void shutdown() {
+		for (FireJournal journal : ExtensionList.lookup(FireJournal.class)) {
+			synchronized (journal) {
+				journal.close();
+			}
+		}
+	}
+
+	private static CatchUp catchUp(String value) {
+		if (value != null) {
+			try {
+				return CatchUp.valueOf(value.trim().toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException e) {
+				LOGGER.log(Level.WARNING, "Unknown catch up policy {0}, using NONE", value);
+			}
+		}
+		return CatchUp.NONE;
+	}
+
+	/**
+	 * @return the number of fires not repeated because the journal had them already
+	 */
+	public long getSuppressed() {
+		return suppressed.get();
+	}
+
+	/**
+	 * @return the number of fires caught up after a restart
+	 */
+	public long getCaughtUp() {
+		return caughtUpFires.get();
+	}
+}
@@ -0,0 +1,38 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import java.util.Locale;
+
+/**
+ * What a line does when a build of the same job with the same parameter values is already in flight, selected by
+ * a {@code [policy]} prefix on the line, e.g. {@code [skip-if-running] H 2 * * * %name=value}.
+ */
+public enum FirePolicy {
+	/**
+	 * fire regardless, the default
+	 */
+	ALWAYS,
+	/**
+	 * do not fire while an identical build is waiting in the queue
+	 */
+	COALESCE,
+	/**
+	 * do not fire while an identical build is waiting in the queue or running
+	 */
+	SKIP_IF_RUNNING;
+
+	/**
+	 * @return the policy spelled as in a line prefix, e.g. {@code skip-if-running}, null if there is none
+	 */
+	@CheckForNull
+	static FirePolicy fromToken(String token) {
+		String name = token.trim().replace('-', '_').toUpperCase(Locale.ROOT);
+		for (FirePolicy policy : values()) {
+			if (policy.name().equals(name)) {
+				return policy;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,42 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.AbstractProject;
+import hudson.model.Action;
+import hudson.model.Cause;
+import hudson.model.Job;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+
+/**
+ * One build to schedule, as produced by {@link ParameterizedTimerTrigger} and handed to the Jenkins queue by
+ * {@link FireDispatcher}.
+ */
+final class FireRequest {
+
+	final Job<?, ?> job;
+	final Action[] actions;
+	int quietPeriod;
+	int attempts;
+
+	FireRequest(@NonNull Job<?, ?> job, @NonNull Action... actions) {
+		this.job = job;
+		this.actions = actions;
+	}
+
+	/**
+	 * @return true if the build was scheduled, false if the job refused it, e.g. because it is disabled
+	 */
+	boolean schedule() {
+		if (job instanceof AbstractProject) {
+			return ((AbstractProject<?, ?>) job).scheduleBuild2(quietPeriod, (Cause) null, actions) != null;
+		} else if (job instanceof WorkflowJob) {
+			return ((WorkflowJob) job).scheduleBuild2(quietPeriod, actions) != null;
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return job.getFullName();
+	}
+}
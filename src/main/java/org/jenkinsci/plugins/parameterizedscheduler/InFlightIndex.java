@@ -0,0 +1,263 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Computer;
+import hudson.model.Executor;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.queue.QueueListener;
+import jenkins.model.Jenkins;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Knows which (job, parameter values) pairs are waiting in the queue or running, so that a line with a
+ * {@link FirePolicy} other than {@link FirePolicy#ALWAYS} can skip its fire without scanning the queue.
+ * <p>
+ * The index is kept current by {@link QueueListenerImpl} and {@link RunListenerImpl}. Items restored from disk
+ * and builds resumed after a restart did not go through the listeners, they are indexed once Jenkins is up, see
+ * {@link #indexRestored()}.
+ * <p>
+ * Parameter values are compared by name and {@link ParameterValue#getValue()}, since most
+ * {@link ParameterValue}s only compare their name. Values whose type does not implement {@code equals} never
+ * match, so such a line always fires.
+ */
+@Extension
+public class InFlightIndex {
+	private static final Logger LOGGER = Logger.getLogger(InFlightIndex.class.getName());
+
+	private final Map<Long, Key> queuedItems = new HashMap<>();
+	private final Map<Run<?, ?>, Key> runningBuilds = new IdentityHashMap<>();
+	private final Map<Key, Integer> queued = new HashMap<>();
+	private final Map<Key, Integer> running = new HashMap<>();
+
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong skipped = new AtomicLong();
+
+	public static InFlightIndex get() {
+		return ExtensionList.lookupSingleton(InFlightIndex.class);
+	}
+
+	/**
+	 * @return false if the policy says not to fire a build with these parameter values now
+	 */
+	boolean shouldFire(@NonNull Job<?, ?> job, @NonNull FirePolicy policy, @NonNull List<ParameterValue> parameters) {
+		if (policy == FirePolicy.ALWAYS) {
+			return true;
+		}
+		Key key = new Key(job.getFullName(), values(parameters));
+		synchronized (this) {
+			if (queued.containsKey(key)) {
+				coalesced.incrementAndGet();
+				LOGGER.log(Level.FINE, "{0} is queued with the same parameters already", job.getFullName());
+				return false;
+			}
+			if (policy == FirePolicy.SKIP_IF_RUNNING && running.containsKey(key)) {
+				skipped.incrementAndGet();
+				LOGGER.log(Level.FINE, "{0} is running with the same parameters already", job.getFullName());
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private synchronized void enterQueue(Queue.Item item) {
+		if (item.task instanceof Job) {
+			Key key = new Key(((Job<?, ?>) item.task).getFullName(), parameters(item.getAction(ParametersAction.class)));
+			if (queuedItems.put(item.getId(), key) == null) {
+				queued.merge(key, 1, Integer::sum);
+			}
+		}
+	}
+
+	private synchronized void leaveQueue(Queue.Item item) {
+		Key key = queuedItems.remove(item.getId());
+		if (key != null) {
+			decrement(queued, key);
+		}
+	}
+
+	private synchronized void start(Run<?, ?> run) {
+		Key key = new Key(run.getParent().getFullName(), parameters(run.getAction(ParametersAction.class)));
+		if (runningBuilds.put(run, key) == null) {
+			running.merge(key, 1, Integer::sum);
+		}
+	}
+
+	private synchronized void finish(Run<?, ?> run) {
+		Key key = runningBuilds.remove(run);
+		if (key != null) {
+			decrement(running, key);
+		}
+	}
+
+	/**
+	 * Forgets the builds of the given item, or of any job nested below it, e.g. once it is deleted.
+	 */
+	private synchronized void forget(Item item) {
+		String prefix = item.getFullName() + '/';
+		for (Iterator<Map.Entry<Run<?, ?>, Key>> it = runningBuilds.entrySet().iterator(); it.hasNext(); ) {
+			Map.Entry<Run<?, ?>, Key> entry = it.next();
+			Job<?, ?> job = entry.getKey().getParent();
+			if (job == item || job.getFullName().startsWith(prefix)) {
+				it.remove();
+				decrement(running, entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Indexes the items restored into the queue and the builds resumed at startup, which the listeners did not see.
+	 */
+	@Initializer(after = InitMilestone.COMPLETED)
+	public static void indexRestored() {
+		InFlightIndex index = get();
+		// under the queue lock, so that no item leaves between being listed and being indexed
+		Queue.withLock(() -> {
+			for (Queue.Item item : Queue.getInstance().getItems()) {
+				index.enterQueue(item);
+			}
+		});
+		for (Computer computer : Jenkins.get().getComputers()) {
+			List<Executor> executors = new ArrayList<>(computer.getExecutors());
+			executors.addAll(computer.getOneOffExecutors());
+			for (Executor executor : executors) {
+				Queue.Executable executable = executor.getCurrentExecutable();
+				if (executable instanceof Run) {
+					Run<?, ?> run = (Run<?, ?>) executable;
+					index.start(run);
+					if (!run.isBuilding()) {
+						// finalized meanwhile, before it was indexed
+						index.finish(run);
+					}
+				}
+			}
+		}
+	}
+
+	private static void decrement(Map<Key, Integer> counts, Key key) {
+		counts.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+	}
+
+	/**
+	 * @return the names and values of the parameters, by name
+	 */
+	private static List<Map.Entry<String, Object>> parameters(ParametersAction action) {
+		return action == null ? List.of() : values(action.getParameters());
+	}
+
+	private static List<Map.Entry<String, Object>> values(List<ParameterValue> parameters) {
+		List<Map.Entry<String, Object>> values = new ArrayList<>(parameters.size());
+		for (ParameterValue parameter : parameters) {
+			values.add(new AbstractMap.SimpleImmutableEntry<>(parameter.getName(), parameter.getValue()));
+		}
+		values.sort(Map.Entry.comparingByKey(Comparator.nullsFirst(Comparator.naturalOrder())));
+		return values;
+	}
+
+	/**
+	 * @return number of fires skipped because an identical build was queued
+	 */
+	public long getCoalesced() {
+		return coalesced.get();
+	}
+
+	/**
+	 * @return number of fires skipped because an identical build was running
+	 */
+	public long getSkipped() {
+		return skipped.get();
+	}
+
+	private static final class Key {
+		private final String job;
+		private final List<Map.Entry<String, Object>> parameters;
+		private final int hashCode;
+
+		Key(String job, List<Map.Entry<String, Object>> parameters) {
+			this.job = job;
+			this.parameters = parameters;
+			this.hashCode = Objects.hash(job, parameters);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof Key)) return false;
+			Key that = (Key) o;
+			return hashCode == that.hashCode && job.equals(that.job) && parameters.equals(that.parameters);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	@Extension
+	public static class QueueListenerImpl extends QueueListener {
+		@Override
+		public void onEnterWaiting(Queue.WaitingItem wi) {
+			get().enterQueue(wi);
+		}
+
+		@Override
+		public void onLeft(Queue.LeftItem li) {
+			get().leaveQueue(li);
+		}
+	}
+
+	@Extension
+	public static class RunListenerImpl extends RunListener<Run<?, ?>> {
+		@Override
+		public void onStarted(Run<?, ?> run, TaskListener listener) {
+			get().start(run);
+		}
+
+		@Override
+		public void onCompleted(Run<?, ?> run, @NonNull TaskListener listener) {
+			get().finish(run);
+		}
+
+		@Override
+		public void onFinalized(Run<?, ?> run) {
+			// in case it never completed, e.g. because it failed to start
+			get().finish(run);
+		}
+
+		@Override
+		public void onDeleted(Run<?, ?> run) {
+			get().finish(run);
+		}
+	}
+
+	@Extension
+	public static class ItemListenerImpl extends ItemListener {
+		@Override
+		public void onDeleted(Item item) {
+			get().forget(item);
+		}
+	}
+}
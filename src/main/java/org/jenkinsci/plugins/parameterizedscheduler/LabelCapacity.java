@@ -0,0 +1,186 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.AbstractProject;
+import hudson.model.Label;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds back the builds of jobs tied to a label that has no idle executor for them, so that the queue does not
+ * fill up with thousands of items waiting for the same few agents. Held builds are released, oldest first, as
+ * builds complete and executors become idle.
+ * <p>
+ * Only freestyle-like jobs have an assigned label known before the build starts, Pipeline builds are never held.
+ * Neither are builds for labels served by a cloud, since clouds only provision agents for the queued demand, or
+ * for labels without any executor, which could never be released.
+ */
+@Extension
+public class LabelCapacity {
+	private static final Logger LOGGER = Logger.getLogger(LabelCapacity.class.getName());
+
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static boolean ENABLED = SystemProperties.getBoolean(LabelCapacity.class.getName() + ".enabled");
+
+	private final Map<Label, Deque<FireRequest>> held = new LinkedHashMap<>();
+	private int heldCount;
+
+	private final AtomicLong deferred = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	public static LabelCapacity get() {
+		return ExtensionList.lookupSingleton(LabelCapacity.class);
+	}
+
+	/**
+	 * Picks the requests their label has capacity for, the ones held from earlier calls first.
+	 *
+	 * @param requests the new requests, the ones without capacity are held or dropped
+	 * @return the requests to schedule
+	 */
+	@NonNull
+	synchronized List<FireRequest> admit(@NonNull List<FireRequest> requests) {
+		if (!ENABLED && heldCount == 0) {
+			return requests;
+		}
+		Map<Label, Integer> capacities = new HashMap<>();
+		List<FireRequest> admitted = new ArrayList<>(requests.size());
+		for (Iterator<Map.Entry<Label, Deque<FireRequest>>> it = held.entrySet().iterator(); it.hasNext(); ) {
+			Map.Entry<Label, Deque<FireRequest>> entry = it.next();
+			Deque<FireRequest> waiting = entry.getValue();
+			int capacity = ENABLED ? capacity(entry.getKey()) : waiting.size();
+			while (capacity > 0 && !waiting.isEmpty()) {
+				admitted.add(waiting.poll());
+				heldCount--;
+				capacity--;
+			}
+			capacities.put(entry.getKey(), capacity);
+			if (waiting.isEmpty()) {
+				it.remove();
+			}
+		}
+		for (FireRequest request : requests) {
+			Label label = ENABLED ? label(request) : null;
+			if (label == null) {
+				admitted.add(request);
+				continue;
+			}
+			int capacity = capacities.computeIfAbsent(label, LabelCapacity::capacity);
+			if (capacity > 0) {
+				capacities.put(label, capacity - 1);
+				admitted.add(request);
+			} else if (heldCount < AdmissionControl.HOLD_CAPACITY) {
+				held.computeIfAbsent(label, l -> new ArrayDeque<>()).add(request);
+				heldCount++;
+				deferred.incrementAndGet();
+			} else {
+				dropped.incrementAndGet();
+				LOGGER.log(Level.WARNING, "Dropped scheduled build of {0}, {1} builds are held back already",
+						new Object[] {request, heldCount});
+			}
+		}
+		return admitted;
+	}
+
+	/**
+	 * @return the label whose capacity limits the request, null if it is not to be held
+	 */
+	@CheckForNull
+	private static Label label(FireRequest request) {
+		if (!(request.job instanceof AbstractProject)) {
+			return null;
+		}
+		Label label = ((AbstractProject<?, ?>) request.job).getAssignedLabel();
+		if (label == null || !label.getClouds().isEmpty() || label.getTotalExecutors() == 0) {
+			return null;
+		}
+		return label;
+	}
+
+	/**
+	 * @return idle executors of the label not claimed by a queue item yet
+	 */
+	private static int capacity(Label label) {
+		int queued = 0;
+		for (Queue.Item item : Queue.getInstance().getApproximateItemsQuickly()) {
+			if (label.equals(item.getAssignedLabel())) {
+				queued++;
+			}
+		}
+		return Math.max(0, label.getIdleExecutors() - queued);
+	}
+
+	/**
+	 * @return true if the request is waiting for an executor
+	 */
+	synchronized boolean holds(@NonNull FireRequest request) {
+		for (Deque<FireRequest> waiting : held.values()) {
+			if (waiting.contains(request)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	synchronized boolean hasHeld() {
+		return heldCount > 0;
+	}
+
+	/**
+	 * @return number of requests waiting for an executor
+	 */
+	public synchronized int getHeld() {
+		return heldCount;
+	}
+
+	/**
+	 * @return number of requests that had to wait for an executor
+	 */
+	public long getDeferred() {
+		return deferred.get();
+	}
+
+	/**
+	 * @return number of requests dropped because too many were held back
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Releases held builds shortly after a build completes, once its executor is idle again.
+	 */
+	@Extension
+	public static class RunListenerImpl extends RunListener<Run<?, ?>> {
+		@Override
+		public void onCompleted(Run<?, ?> run, @NonNull TaskListener listener) {
+			if (LabelCapacity.get().hasHeld()) {
+				Timer.get().schedule(FireDispatcher.get()::drain, 1, TimeUnit.SECONDS);
+			}
+		}
+	}
+}
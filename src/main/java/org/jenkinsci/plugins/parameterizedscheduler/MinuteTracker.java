@@ -0,0 +1,100 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Extension;
+import hudson.ExtensionList;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers the last minute {@link Cron} evaluated, so that a tick running late, e.g. after a long GC pause,
+ * replays the minutes it skipped and two overlapping ticks never evaluate the same minute twice.
+ */
+@Extension
+public class MinuteTracker {
+	private static final Logger LOGGER = Logger.getLogger(MinuteTracker.class.getName());
+
+	private static final long[] NONE = new long[0];
+
+	/**
+	 * Maximum number of skipped minutes replayed by one tick, older ones are given up.
+	 */
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static int MAX_REPLAY = SystemProperties.getInteger(MinuteTracker.class.getName() + ".maxReplay", 10);
+
+	private final AtomicLong lastEvaluated = new AtomicLong(Long.MIN_VALUE);
+
+	private final AtomicLong skipped = new AtomicLong();
+	private final AtomicLong replayed = new AtomicLong();
+	private final AtomicLong duplicates = new AtomicLong();
+
+	public static MinuteTracker get() {
+		return ExtensionList.lookupSingleton(MinuteTracker.class);
+	}
+
+	/**
+	 * Claims every minute up to the given one that was not evaluated yet.
+	 *
+	 * @param epochMinute the current minute
+	 * @return the minutes to evaluate in order, the current one last; empty if the minute was claimed already
+	 */
+	@NonNull
+	long[] claim(long epochMinute) {
+		long last;
+		do {
+			last = lastEvaluated.get();
+			if (epochMinute <= last) {
+				duplicates.incrementAndGet();
+				LOGGER.log(Level.FINE, "Minute {0} was evaluated already", epochMinute);
+				return NONE;
+			}
+		} while (!lastEvaluated.compareAndSet(last, epochMinute));
+
+		if (last == Long.MIN_VALUE || last == epochMinute - 1) {
+			return new long[] {epochMinute};
+		}
+		long missed = epochMinute - last - 1;
+		int replay = (int) Math.min(missed, Math.max(0, MAX_REPLAY));
+		skipped.addAndGet(missed);
+		replayed.addAndGet(replay);
+		if (replay < missed) {
+			LOGGER.log(Level.WARNING, "Parameterized schedules skipped {0} minutes, only the last {1} are replayed",
+					new Object[] {missed, replay});
+		} else {
+			LOGGER.log(Level.INFO, "Parameterized schedules skipped {0} minutes, replaying them", missed);
+		}
+		long[] minutes = new long[replay + 1];
+		for (int i = 0; i <= replay; i++) {
+			minutes[i] = epochMinute - replay + i;
+		}
+		return minutes;
+	}
+
+	/**
+	 * @return the number of minutes found skipped between two ticks
+	 */
+	public long getSkipped() {
+		return skipped.get();
+	}
+
+	/**
+	 * @return the number of skipped minutes that were replayed
+	 */
+	public long getReplayed() {
+		return replayed.get();
+	}
+
+	/**
+	 * @return the number of ticks that found their minute evaluated already
+	 */
+	public long getDuplicates() {
+		return duplicates.get();
+	}
+}
@@ -0,0 +1,169 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Min-heap of schedules keyed by the epoch minute they fire next, so that a tick only touches what is due
+ * instead of checking every configured line.
+ * <p>
+ * Lines that fire at exactly the same minutes, see {@link ParameterizedCronTab#getScheduleKey()}, share one
+ * schedule no matter which owner they belong to. Each distinct schedule is evaluated once per tick and its
+ * result fanned out to all subscribed lines.
+ * <p>
+ * Whether a schedule is due is read from the fields of the tick, shared per timezone, and its next fire time is
+ * computed from its bitmasks, see {@link CompiledCronTab}, so the tick does not go through {@code Calendar}.
+ * <p>
+ * Schedules that lose their last subscriber are cancelled in place and dropped when they surface, or purged
+ * in bulk once they make up half of the heap.
+ *
+ * @param <K> the owner of the lines, normally a {@link ParameterizedTimerTrigger}
+ */
+class NextFireIndex<K> {
+
+	private final PriorityQueue<Schedule<K>> queue = new PriorityQueue<>(Comparator.comparingLong((Schedule<K> s) -> s.nextFire));
+	private final Map<Object, Schedule<K>> schedules = new HashMap<>();
+	private final Map<K, List<Subscription<K>>> subscriptions = new HashMap<>();
+	private int cancelled;
+
+	/**
+	 * Replaces all lines of the owner.
+	 *
+	 * @param fromMinute the first epoch minute the lines may fire at
+	 */
+	synchronized void schedule(@NonNull K owner, @NonNull List<ParameterizedCronTab> cronTabs, long fromMinute) {
+		remove(owner);
+		List<Subscription<K>> ownerSubscriptions = new ArrayList<>(cronTabs.size());
+		for (int i = 0; i < cronTabs.size(); i++) {
+			ParameterizedCronTab cronTab = cronTabs.get(i);
+			Schedule<K> schedule = schedules.get(cronTab.getScheduleKey());
+			if (schedule == null) {
+				schedule = new Schedule<>(cronTab);
+				schedule.nextFire = cronTab.ceil(fromMinute);
+				schedules.put(schedule.key, schedule);
+				if (schedule.nextFire != ParameterizedCronTab.NEVER) {
+					queue.add(schedule);
+				}
+			}
+			Subscription<K> subscription = new Subscription<>(owner, cronTab, i, schedule);
+			schedule.subscriptions.add(subscription);
+			ownerSubscriptions.add(subscription);
+		}
+		subscriptions.put(owner, ownerSubscriptions);
+	}
+
+	synchronized void remove(@NonNull K owner) {
+		List<Subscription<K>> removed = subscriptions.remove(owner);
+		if (removed == null) {
+			return;
+		}
+		for (Subscription<K> subscription : removed) {
+			Schedule<K> schedule = subscription.schedule;
+			schedule.subscriptions.remove(subscription);
+			if (!schedule.subscriptions.isEmpty()) {
+				continue;
+			}
+			schedules.remove(schedule.key);
+			if (schedule.nextFire != ParameterizedCronTab.NEVER) {
+				schedule.cancelled = true;
+				cancelled++;
+			}
+		}
+		if (cancelled > queue.size() / 2) {
+			queue.removeIf(s -> s.cancelled);
+			cancelled = 0;
+		}
+	}
+
+	/**
+	 * Pops every schedule due at or before the given minute and re-inserts it at its next fire time. Schedules
+	 * that were due before the given minute were missed and are only fired if they also match the given minute.
+	 *
+	 * @return the lines firing at the given minute, grouped by owner in line order
+	 */
+	@NonNull
+	synchronized Map<K, List<ParameterizedCronTab>> poll(long epochMinute) {
+		// each timezone is converted once for all schedules due now
+		TickTime now = new TickTime(epochMinute);
+		List<Subscription<K>> due = new ArrayList<>();
+		while (!queue.isEmpty() && queue.peek().nextFire <= epochMinute) {
+			Schedule<K> schedule = queue.poll();
+			if (schedule.cancelled) {
+				cancelled--;
+				continue;
+			}
+			ParameterizedCronTab cronTab = schedule.subscriptions.iterator().next().cronTab;
+			if (schedule.nextFire < epochMinute) {
+				schedule.nextFire = cronTab.check(now) ? epochMinute : cronTab.ceil(epochMinute + 1);
+			}
+			if (schedule.nextFire == epochMinute) {
+				due.addAll(schedule.subscriptions);
+				schedule.nextFire = cronTab.ceil(epochMinute + 1);
+			}
+			if (schedule.nextFire != ParameterizedCronTab.NEVER) {
+				queue.add(schedule);
+			}
+		}
+		due.sort(Comparator.comparingInt((Subscription<K> s) -> s.index));
+		Map<K, List<ParameterizedCronTab>> result = new LinkedHashMap<>();
+		for (Subscription<K> subscription : due) {
+			result.computeIfAbsent(subscription.owner, k -> new ArrayList<>()).add(subscription.cronTab);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the earliest pending fire, or {@link ParameterizedCronTab#NEVER}
+	 */
+	synchronized long peek() {
+		while (!queue.isEmpty() && queue.peek().cancelled) {
+			queue.poll();
+			cancelled--;
+		}
+		return queue.isEmpty() ? ParameterizedCronTab.NEVER : queue.peek().nextFire;
+	}
+
+	/**
+	 * @return the number of distinct pending schedules
+	 */
+	synchronized int size() {
+		return queue.size() - cancelled;
+	}
+
+	private static final class Schedule<K> {
+		private final Object key;
+		/**
+		 * keeps insertion order so that the fan out follows registration order
+		 */
+		private final Set<Subscription<K>> subscriptions = new LinkedHashSet<>();
+		private long nextFire;
+		private boolean cancelled;
+
+		private Schedule(ParameterizedCronTab cronTab) {
+			this.key = cronTab.getScheduleKey();
+		}
+	}
+
+	private static final class Subscription<K> {
+		private final K owner;
+		private final ParameterizedCronTab cronTab;
+		private final int index;
+		private final Schedule<K> schedule;
+
+		private Subscription(K owner, ParameterizedCronTab cronTab, int index, Schedule<K> schedule) {
+			this.owner = owner;
+			this.cronTab = cronTab;
+			this.index = index;
+			this.schedule = schedule;
+		}
+	}
+}
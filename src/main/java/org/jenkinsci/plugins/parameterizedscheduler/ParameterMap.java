@@ -0,0 +1,156 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The parameters of a line as two parallel arrays of names and values, in the order they were written.
+ * <p>
+ * Names are interned, and so are whole maps: lines of any job with the same parameters in the same order share
+ * one instance. Lookups scan the names, which for the handful of parameters of a line is as fast as hashing.
+ */
+final class ParameterMap extends AbstractMap<String, String> {
+
+	private static final Interner<String> NAMES = Interners.newWeakInterner();
+	/**
+	 * keyed by the order sensitive {@link Key}, since equal maps in another order print differently in the cause
+	 */
+	private static final Cache<Key, ParameterMap> MAPS = CacheBuilder.newBuilder().weakValues().build();
+	private static final String[] NONE = new String[0];
+	static final ParameterMap EMPTY = new ParameterMap(NONE, NONE);
+
+	private final String[] names;
+	private final String[] values;
+
+	private ParameterMap(String[] names, String[] values) {
+		this.names = names;
+		this.values = values;
+	}
+
+	/**
+	 * @return the shared instance with the same entries in the same order
+	 */
+	@NonNull
+	static ParameterMap of(@NonNull Map<String, String> parameters) {
+		if (parameters instanceof ParameterMap) {
+			return (ParameterMap) parameters;
+		}
+		if (parameters.isEmpty()) {
+			return EMPTY;
+		}
+		String[] names = new String[parameters.size()];
+		String[] values = new String[parameters.size()];
+		int i = 0;
+		for (Map.Entry<String, String> entry : parameters.entrySet()) {
+			names[i] = NAMES.intern(entry.getKey());
+			values[i] = entry.getValue();
+			i++;
+		}
+		ParameterMap map = new ParameterMap(names, values);
+		ParameterMap shared = MAPS.asMap().putIfAbsent(new Key(names, values), map);
+		return shared != null ? shared : map;
+	}
+
+	@Override
+	public int size() {
+		return names.length;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) != -1;
+	}
+
+	@Override
+	public String get(Object key) {
+		int i = indexOf(key);
+		return i != -1 ? values[i] : null;
+	}
+
+	private int indexOf(Object key) {
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals(key)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = 0;
+		for (int i = 0; i < names.length; i++) {
+			hash += names[i].hashCode() ^ values[i].hashCode();
+		}
+		return hash;
+	}
+
+	@NonNull
+	@Override
+	public Set<Entry<String, String>> entrySet() {
+		return new AbstractSet<>() {
+			@Override
+			public Iterator<Entry<String, String>> iterator() {
+				return new Iterator<>() {
+					private int next;
+
+					@Override
+					public boolean hasNext() {
+						return next < names.length;
+					}
+
+					@Override
+					public Entry<String, String> next() {
+						if (next >= names.length) {
+							throw new NoSuchElementException();
+						}
+						Entry<String, String> entry = new SimpleImmutableEntry<>(names[next], values[next]);
+						next++;
+						return entry;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return names.length;
+			}
+		};
+	}
+
+	private static final class Key {
+		private final String[] names;
+		private final String[] values;
+		private final int hash;
+
+		Key(String[] names, String[] values) {
+			this.names = names;
+			this.values = values;
+			this.hash = 31 * Arrays.hashCode(names) + Arrays.hashCode(values);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof Key)) return false;
+			Key that = (Key) o;
+			return hash == that.hash && Arrays.equals(names, that.names) && Arrays.equals(values, that.values);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
@@ -1,64 +1,273 @@
 package org.jenkinsci.plugins.parameterizedscheduler;
 
-import com.google.common.base.Splitter;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.model.ParametersDefinitionProperty;
-import org.apache.commons.lang.StringUtils;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
 
+/**
+ * Reads the {@code name=value;othername=othervalue} part of a line in a single pass. A backslash escapes
+ * {@code ;}, any other backslash is kept as is, so that values written before escapes existed, such as
+ * {@code \\server\share} or {@code a\=b}, keep their meaning. A value needs no escape for {@code =}, only the first
+ * one of a pair separates the name from the value. Every problem is reported with its line and column, see
+ * {@link Diagnostic}.
+ */
 public class ParameterParser {
 	/**
 	 * if ever changed, documentation and messages will need to be updated as well
 	 */
-	private static final String PARAMETER_SEPARATOR = "%";
-	private static final String NAME_VALUE_SEPARATOR = "=";
-	private static final String PAIR_SEPARATOR = ";";
+	private static final char PARAMETER_SEPARATOR = '%';
+	private static final char NAME_VALUE_SEPARATOR = '=';
+	private static final char PAIR_SEPARATOR = ';';
+	private static final char ESCAPE = '\\';
 
 	/**
 	 * Parses a string with key value pairs
 	 * @param nameValuePairFormattedString of name=value;other=value name value pairs
 	 * @return Map of key-value pairs parsed from provided string
+	 * @throws IllegalArgumentException on the first malformed pair
 	 */
 	public Map<String, String> parse(String nameValuePairFormattedString) {
-		if (StringUtils.isBlank(nameValuePairFormattedString)) {
+		if (nameValuePairFormattedString == null) {
 			return Collections.emptyMap();
 		}
-		String clean = nameValuePairFormattedString.trim();
-		if (nameValuePairFormattedString.endsWith(PAIR_SEPARATOR)) {
-			//the default splitter message in this scenario is not user friendly, so snip a trailing semicolon
-			clean = clean.substring(0, clean.length() - 1);
+		List<Diagnostic> diagnostics = new ArrayList<>(1);
+		Map<String, String> result = parse(nameValuePairFormattedString, 0, 0, diagnostics, null);
+		if (!diagnostics.isEmpty()) {
+			Diagnostic first = diagnostics.get(0);
+			throw new IllegalArgumentException(first.getMessage() + " (column " + first.getColumn() + ")");
 		}
-		return Splitter.on(PAIR_SEPARATOR).trimResults().withKeyValueSeparator(Splitter.on(NAME_VALUE_SEPARATOR).limit(2)).split(clean);
+		return result;
 	}
 
-	@CheckForNull
-	public String checkSanity(String cronTabSpec, ParametersDefinitionProperty parametersDefinitionProperty) {
-		String[] cronTabLines = cronTabSpec.split("\\r?\\n");
-		for (String cronTabLine : cronTabLines) {
-			int idx = cronTabLine.indexOf(PARAMETER_SEPARATOR);
-			if (idx != -1 && idx + 1 < cronTabLine.length()) {
-				String split = cronTabLine.substring(idx + 1);
-				try {
-					Map<String, String> parsedParameters = parse(split);
-					List<String> parameterDefinitionNames = parametersDefinitionProperty != null
-							? parametersDefinitionProperty.getParameterDefinitionNames() : Collections.emptyList();
-					List<String> parsedKeySet = parsedParameters.keySet().stream().filter(s -> !parameterDefinitionNames.contains(s)).collect(Collectors.toList());
-					if (!parsedKeySet.isEmpty()) {
-						return Messages.ParameterizedTimerTrigger_UndefinedParameter(parsedKeySet, parameterDefinitionNames);
-					}
-					List<String> emptyParameters = parsedParameters.keySet().stream().filter(k -> parsedParameters.get(k).isEmpty()).collect(Collectors.toList());
-					if (!emptyParameters.isEmpty()) {
-						return Messages.ParameterizedTimerTrigger_EmptyParameter(emptyParameters);
+	/**
+	 * Parses the pairs of {@code text} from index {@code from} to its end.
+	 *
+	 * @param lineNumber the line reported in diagnostics
+	 * @param diagnostics collects every problem found
+	 * @param keyColumns if not null, collects the column of each name
+	 * @return the pairs in order of appearance, without the malformed ones
+	 */
+	@NonNull
+	Map<String, String> parse(String text, int from, int lineNumber, List<Diagnostic> diagnostics,
+			@CheckForNull Map<String, Integer> keyColumns) {
+		int end = text.length();
+		int i = skipWhitespace(text, from, end);
+		if (i == end) {
+			return Collections.emptyMap();
+		}
+		Map<String, String> result = new LinkedHashMap<>();
+		StringBuilder buffer = new StringBuilder();
+		boolean first = true;
+		while (true) {
+			i = skipWhitespace(text, i, end);
+			int pairStart = i;
+			String key = null;
+			buffer.setLength(0);
+			int trimmedLength = 0;
+			while (i < end) {
+				char c = text.charAt(i);
+				if (c == ESCAPE && i + 1 < end && isEscapable(text.charAt(i + 1))) {
+					buffer.append(text.charAt(i + 1));
+					trimmedLength = buffer.length();
+					i += 2;
+					continue;
+				}
+				if (c == PAIR_SEPARATOR) {
+					break;
+				}
+				if (c == NAME_VALUE_SEPARATOR && key == null) {
+					key = buffer.toString();
+					buffer.setLength(0);
+					trimmedLength = 0;
+				} else {
+					buffer.append(c);
+					if (!Character.isWhitespace(c)) {
+						trimmedLength = buffer.length();
 					}
-				} catch (IllegalArgumentException e) {
-					return e.getMessage();
 				}
+				i++;
+			}
+			boolean last = i >= end;
+			int column = pairStart + 1;
+			if (key == null && trimmedLength == 0) {
+				// a single trailing semicolon is tolerated
+				if (!last || first) {
+					diagnostics.add(new Diagnostic(lineNumber, column, Messages.ParameterParser_EmptyPair(), true));
+				}
+			} else if (key == null) {
+				diagnostics.add(new Diagnostic(lineNumber, column, Messages.ParameterParser_MissingSeparator(buffer.substring(0, trimmedLength)), true));
+			} else if (key.isEmpty()) {
+				diagnostics.add(new Diagnostic(lineNumber, column, Messages.ParameterParser_MissingName(), true));
+			} else if (result.containsKey(key)) {
+				diagnostics.add(new Diagnostic(lineNumber, column, Messages.ParameterParser_DuplicateKey(key), true));
+			} else {
+				result.put(key, buffer.substring(0, trimmedLength));
+				if (keyColumns != null) {
+					keyColumns.put(key, column);
+				}
+			}
+			if (last) {
+				break;
+			}
+			i++;
+			first = false;
+		}
+		switch (result.size()) {
+			case 0:
+				return Collections.emptyMap();
+			case 1:
+				Map.Entry<String, String> entry = result.entrySet().iterator().next();
+				return Collections.singletonMap(entry.getKey(), entry.getValue());
+			default:
+				return Collections.unmodifiableMap(result);
+		}
+	}
+
+	private static int skipWhitespace(String text, int from, int end) {
+		while (from < end && Character.isWhitespace(text.charAt(from))) {
+			from++;
+		}
+		return from;
+	}
+
+	private static boolean isEscapable(char c) {
+		return c == PAIR_SEPARATOR;
+	}
+
+	@CheckForNull
+	public String checkSanity(String cronTabSpec, ParametersDefinitionProperty parametersDefinitionProperty) {
+		List<Diagnostic> diagnostics = diagnose(cronTabSpec, parametersDefinitionProperty, true);
+		return diagnostics.isEmpty() ? null : diagnostics.get(0).getMessage();
+	}
+
+	/**
+	 * Checks the parameters of every line of a specification against the parameters of the job.
+	 *
+	 * @param firstOnly stop at the first line with a problem
+	 * @return the problems found, in order
+	 */
+	@NonNull
+	List<Diagnostic> diagnose(String cronTabSpec, @CheckForNull ParametersDefinitionProperty parametersDefinitionProperty,
+			boolean firstOnly) {
+		List<Diagnostic> diagnostics = new ArrayList<>();
+		List<String> parameterDefinitionNames = null;
+		Set<String> definedNames = null;
+		int lineNumber = 0;
+		int lineStart = 0;
+		int length = cronTabSpec.length();
+		while (lineStart <= length && !(firstOnly && !diagnostics.isEmpty())) {
+			int lineEnd = cronTabSpec.indexOf('\n', lineStart);
+			if (lineEnd == -1) {
+				lineEnd = length;
 			}
+			lineNumber++;
+			String line = cronTabSpec.substring(lineStart, lineEnd > lineStart && cronTabSpec.charAt(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd);
+			lineStart = lineEnd + 1;
+			if (line.trim().startsWith("#")) {
+				continue;
+			}
+			int idx = line.indexOf(PARAMETER_SEPARATOR);
+			if (idx == -1 || idx + 1 >= line.length()) {
+				continue;
+			}
+			if (definedNames == null) {
+				parameterDefinitionNames = parametersDefinitionProperty != null
+						? parametersDefinitionProperty.getParameterDefinitionNames() : Collections.emptyList();
+				definedNames = new HashSet<>(parameterDefinitionNames);
+			}
+			diagnostics.addAll(diagnose(line, idx + 1, lineNumber, parameterDefinitionNames, definedNames));
+		}
+		return diagnostics;
+	}
+
+	/**
+	 * Checks the parameters of a single line.
+	 *
+	 * @param from index of the first character after the {@code %}
+	 */
+	@NonNull
+	List<Diagnostic> diagnose(String line, int from, int lineNumber, List<String> parameterDefinitionNames, Set<String> definedNames) {
+		List<Diagnostic> diagnostics = new ArrayList<>(0);
+		Map<String, Integer> keyColumns = new LinkedHashMap<>();
+		Map<String, String> parsedParameters = parse(line, from, lineNumber, diagnostics, keyColumns);
+		if (!diagnostics.isEmpty()) {
+			return diagnostics;
+		}
+		List<String> undefined = new ArrayList<>(0);
+		List<String> empty = new ArrayList<>(0);
+		int undefinedColumn = 0;
+		int emptyColumn = 0;
+		for (Map.Entry<String, String> entry : parsedParameters.entrySet()) {
+			if (!definedNames.contains(entry.getKey())) {
+				undefinedColumn = undefined.isEmpty() ? keyColumns.get(entry.getKey()) : undefinedColumn;
+				undefined.add(entry.getKey());
+			} else if (entry.getValue().isEmpty()) {
+				emptyColumn = empty.isEmpty() ? keyColumns.get(entry.getKey()) : emptyColumn;
+				empty.add(entry.getKey());
+			}
+		}
+		if (!undefined.isEmpty()) {
+			diagnostics.add(new Diagnostic(lineNumber, undefinedColumn,
+					Messages.ParameterizedTimerTrigger_UndefinedParameter(undefined, parameterDefinitionNames), false));
+		}
+		if (!empty.isEmpty()) {
+			diagnostics.add(new Diagnostic(lineNumber, emptyColumn, Messages.ParameterizedTimerTrigger_EmptyParameter(empty), false));
+		}
+		return diagnostics;
+	}
+
+	/**
+	 * A problem found in a specification.
+	 */
+	static final class Diagnostic {
+		private final int line;
+		private final int column;
+		private final String message;
+		private final boolean error;
+
+		Diagnostic(int line, int column, String message, boolean error) {
+			this.line = line;
+			this.column = column;
+			this.message = message;
+			this.error = error;
+		}
+
+		/**
+		 * @return the line in the specification, counting from 1, 0 if unknown
+		 */
+		int getLine() {
+			return line;
+		}
+
+		/**
+		 * @return the column in the line, counting from 1
+		 */
+		int getColumn() {
+			return column;
+		}
+
+		String getMessage() {
+			return message;
+		}
+
+		/**
+		 * @return true for malformed input, false for input that parses but is likely a mistake
+		 */
+		boolean isError() {
+			return error;
+		}
+
+		@Override
+		public String toString() {
+			return Messages.ParameterParser_Position(String.valueOf(line), String.valueOf(column), message);
 		}
-		return null;
 	}
 }
@@ -1,13 +1,15 @@
 package org.jenkinsci.plugins.parameterizedscheduler;
 
 import java.util.Calendar;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.scheduler.CronTab;
-import hudson.scheduler.CronTabList;
 import hudson.scheduler.Hash;
+import hudson.scheduler.RareOrImpossibleDateException;
 
 /**
  * this is a copy of {@link CronTab} with added parameters map support
@@ -16,16 +18,64 @@ import hudson.scheduler.Hash;
  */
 public class ParameterizedCronTab {
 
+	/**
+	 * returned by {@link #ceil(long)} when the line will never fire again
+	 */
+	public static final long NEVER = Long.MAX_VALUE;
+
 	private final Map<String, String> parameterValues;
-	private final CronTabList cronTabList;
+	/**
+	 * only kept if it could not be compiled, everything else runs on {@link #compiled}
+	 */
+	@CheckForNull
+	private final CronTab cronTab;
+	private final CompiledCronTab compiled;
+	private final String timezone;
+	private final long lineKey;
+	private final FirePolicy firePolicy;
+	private final String sanity;
 
 	/**
 	 * @param cronTab the crontab to use as a template
 	 * @param parameters the parameters in name=value key pairings
 	 */
 	public ParameterizedCronTab(CronTab cronTab, Map<String, String> parameters) {
-		cronTabList = new CronTabList(Collections.singleton(cronTab));
-		parameterValues = parameters;
+		this(cronTab, parameters, null);
+	}
+
+	/**
+	 * @param cronTab the crontab to use as a template
+	 * @param parameters the parameters in name=value key pairings
+	 * @param timezone the timezone the crontab was created with, null for the default timezone
+	 */
+	public ParameterizedCronTab(CronTab cronTab, Map<String, String> parameters, String timezone) {
+		this(cronTab, parameters, timezone, 0, FirePolicy.ALWAYS);
+	}
+
+	ParameterizedCronTab(CronTab cronTab, Map<String, String> parameters, String timezone, long lineKey, FirePolicy firePolicy) {
+		compiled = CompiledCronTab.compile(cronTab, timezone);
+		this.cronTab = compiled == null ? cronTab : null;
+		parameterValues = parameters != null ? ParameterMap.of(parameters) : ParameterMap.EMPTY;
+		this.timezone = timezone;
+		this.lineKey = lineKey;
+		this.firePolicy = firePolicy;
+		sanity = cronTab.checkSanity();
+	}
+
+	/**
+	 * Restores a line from its compiled fields without parsing it, see {@link ScheduleCache}.
+	 *
+	 * @param sanity what {@link #checkSanity()} returned for the line
+	 */
+	ParameterizedCronTab(@NonNull CompiledCronTab compiled, Map<String, String> parameters, String timezone, long lineKey,
+			FirePolicy firePolicy, @CheckForNull String sanity) {
+		this.cronTab = null;
+		this.compiled = compiled;
+		parameterValues = parameters != null ? ParameterMap.of(parameters) : ParameterMap.EMPTY;
+		this.timezone = timezone;
+		this.lineKey = lineKey;
+		this.firePolicy = firePolicy;
+		this.sanity = sanity;
 	}
 
 	/**
@@ -34,18 +84,7 @@ public class ParameterizedCronTab {
 	 *      of not spreading it out at all.
 	 */
 	public static ParameterizedCronTab create(String line, int lineNumber, Hash hash, String timezone) {
-		Map<String, String> parameters = new HashMap<>();
-		int firstPercentIdx = line.indexOf("%");
-		if(firstPercentIdx != -1) {
-			String cronLinePart = line.substring(0, firstPercentIdx).trim();
-			String paramsLinePart = line.substring(firstPercentIdx + 1).trim();
-			CronTab cronTab = new CronTab(cronLinePart, lineNumber, hash, timezone);
-			parameters = new ParameterParser().parse(paramsLinePart);
-			return new ParameterizedCronTab(cronTab, parameters);
-		} else {
-			CronTab cronTab = new CronTab(line, lineNumber, hash, timezone);
-			return new ParameterizedCronTab(cronTab, parameters);
-		}
+		return ParsedSpecification.Line.parse(line, lineNumber, timezone).resolve(hash);
 	}
 
 	public Map<String, String> getParameterValues() {
@@ -54,10 +93,92 @@ public class ParameterizedCronTab {
 
 
 	public boolean check(Calendar calendar) {
-		return cronTabList.check(calendar);
+		if (compiled == null) {
+			return cronTab.check(calendar);
+		}
+		TimeZone timeZone = timezone == null ? calendar.getTimeZone() : TimeZone.getTimeZone(timezone);
+		return compiled.matches(CronFields.of(TimeUnit.MILLISECONDS.toMinutes(calendar.getTimeInMillis()), timeZone));
+	}
+
+	/**
+	 * Allocation free variant of {@link #check(Calendar)} for the compiled case.
+	 *
+	 * @param fields the minute to check, read in the timezone of this line
+	 */
+	boolean check(CronFields fields) {
+		if (compiled == null) {
+			Calendar calendar = Calendar.getInstance();
+			calendar.setTimeInMillis(TimeUnit.MINUTES.toMillis(fields.epochMinute));
+			return cronTab.check(calendar);
+		}
+		return compiled.matches(fields);
+	}
+
+	/**
+	 * Variant of {@link #check(CronFields)} reading the fields of the tick in the timezone of this line.
+	 */
+	boolean check(TickTime tick) {
+		if (compiled == null) {
+			return cronTab.check(tick.calendar(timezone));
+		}
+		return compiled.matches(tick.fields(timezone));
+	}
+
+	/**
+	 * @return identifies the line within its specification across restarts, from its number and text
+	 */
+	long getLineKey() {
+		return lineKey;
+	}
+
+	/**
+	 * @return what the line does when an identical build is in flight already
+	 */
+	FirePolicy getFirePolicy() {
+		return firePolicy;
+	}
+
+	/**
+	 * @return the fields compiled to bitmasks, null if the crontab could not be compiled
+	 */
+	CompiledCronTab getCompiled() {
+		return compiled;
+	}
+
+	/**
+	 * @return an object equal for all lines that fire at exactly the same minutes, across jobs
+	 */
+	Object getScheduleKey() {
+		return compiled != null ? compiled : this;
+	}
+
+	/**
+	 * @return the timezone this line is evaluated in
+	 */
+	TimeZone getTimeZone() {
+		return timezone == null ? TimeZone.getDefault() : TimeZone.getTimeZone(timezone);
+	}
+
+	/**
+	 * Computes the first minute, at or after the given one, at which this line fires.
+	 *
+	 * @param epochMinute minutes since the epoch
+	 * @return minutes since the epoch, or {@link #NEVER}
+	 */
+	public long ceil(long epochMinute) {
+		if (compiled != null) {
+			return compiled.ceil(epochMinute);
+		}
+		Calendar calendar = Calendar.getInstance(getTimeZone());
+		calendar.setTimeInMillis(TimeUnit.MINUTES.toMillis(epochMinute));
+		try {
+			return TimeUnit.MILLISECONDS.toMinutes(cronTab.ceil(calendar).getTimeInMillis());
+		} catch (RareOrImpossibleDateException e) {
+			return NEVER;
+		}
 	}
 
 	public String checkSanity() {
-		return cronTabList.checkSanity();
+		return sanity;
 	}
 }
@@ -17,44 +17,73 @@ import java.util.stream.Collectors;
 public class ParameterizedCronTabList {
 
 	private final List<ParameterizedCronTab> cronTabs;
+	private final String timezone;
 
 	public ParameterizedCronTabList(List<ParameterizedCronTab> cronTabs) {
+		this(cronTabs, null);
+	}
+
+	/**
+	 * @param timezone the timezone shared by all lines, null for the default timezone
+	 */
+	public ParameterizedCronTabList(List<ParameterizedCronTab> cronTabs, String timezone) {
 		this.cronTabs = cronTabs;
+		this.timezone = timezone;
 	}
 
 	public static ParameterizedCronTabList create(String cronTabSpecification) {
 		return create(cronTabSpecification, null);
 	}
 
+	/**
+	 * @param hash spreads the {@code H} fields, null to not spread them
+	 * @throws IllegalArgumentException if the specification is invalid
+	 */
 	public static ParameterizedCronTabList create(String cronTabSpecification, Hash hash) {
-		List<ParameterizedCronTab> result = new ArrayList<>();
-		int lineNumber = 0;
-		String timezone = null;
-		for (String line : cronTabSpecification.split("\\r?\\n")) {
-			line = line.trim();
-			if(line.length() > 0 && !line.startsWith("#")) {
-				lineNumber++;
-				if(lineNumber == 1 && line.startsWith("TZ=")) {
-					timezone = CronTabList.getValidTimezone(line.replace("TZ=", ""));
-					if (timezone == null) {
-						throw new IllegalArgumentException("Invalid or unsupported timezone '" + line + "'");
-					}
-				} else {
-					try {
-						result.add(ParameterizedCronTab.create(line, lineNumber, hash, timezone));
-					} catch (IllegalArgumentException e) {
-						throw new IllegalArgumentException(String.format("Invalid input: \"%s\": %s", line, e), e);
-					}
-				}
-			}
-		}
-		return new ParameterizedCronTabList(result);
+		return ParsedSpecification.of(cronTabSpecification).resolve(hash);
+	}
+
+	public List<ParameterizedCronTab> getCronTabs() {
+		return cronTabs;
+	}
+
+	/**
+	 * @return the timezone shared by all lines, null for the default timezone
+	 */
+	String getTimezone() {
+		return timezone;
 	}
 
 	public List<ParameterizedCronTab> check(Calendar calendar) {
 		return cronTabs.stream().filter(tab -> tab.check(calendar)).collect(Collectors.toList());
 	}
 
+	/**
+	 * Reads the calendar fields of the minute once and matches every line against them.
+	 *
+	 * @param epochMinute minutes since the epoch
+	 * @return the lines firing at that minute
+	 */
+	public List<ParameterizedCronTab> check(long epochMinute) {
+		return check(new TickTime(epochMinute));
+	}
+
+	/**
+	 * Matches every line against the fields of the tick in the timezone of the line, which are shared with the other
+	 * lines in the same timezone.
+	 *
+	 * @return the lines firing at the minute of the tick
+	 */
+	List<ParameterizedCronTab> check(TickTime tick) {
+		List<ParameterizedCronTab> result = new ArrayList<>();
+		for (ParameterizedCronTab tab : cronTabs) {
+			if (tab.check(tick)) {
+				result.add(tab);
+			}
+		}
+		return result;
+	}
+
 	public String checkSanity() {
 		for (ParameterizedCronTab tab : cronTabs) {
 			String s = tab.checkSanity();
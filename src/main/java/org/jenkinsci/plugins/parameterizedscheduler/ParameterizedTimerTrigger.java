@@ -1,22 +1,38 @@
 package org.jenkinsci.plugins.parameterizedscheduler;
 
-import hudson.model.AbstractProject;
-import hudson.model.Cause;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Util;
+import hudson.model.BooleanParameterDefinition;
 import hudson.model.CauseAction;
+import hudson.model.ChoiceParameterDefinition;
 import hudson.model.Job;
 import hudson.model.ParameterDefinition;
 import hudson.model.ParameterValue;
 import hudson.model.ParametersAction;
 import hudson.model.ParametersDefinitionProperty;
+import hudson.model.PasswordParameterDefinition;
+import hudson.model.SimpleParameterDefinition;
+import hudson.model.StringParameterDefinition;
+import hudson.model.TextParameterDefinition;
 import hudson.scheduler.Hash;
 import hudson.triggers.Trigger;
-import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerRequest2;
 
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,13 +45,66 @@ import java.util.logging.Logger;
 @SuppressWarnings("rawtypes")
 public class ParameterizedTimerTrigger extends Trigger<Job> {
 	private static final Logger LOGGER = Logger.getLogger(ParameterizedTimerTrigger.class.getName());
-	private transient ParameterizedCronTabList cronTabList;
+
+	/**
+	 * Spreads the builds fired in the same minute over this many seconds, by giving each job a quiet period
+	 * derived from its name. 0 schedules them all at once.
+	 */
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static int SPREAD = SystemProperties.getInteger(ParameterizedTimerTrigger.class.getName() + ".spread", 0);
+
+	/**
+	 * Reuse the parameter values resolved for a line until the job is reconfigured, instead of resolving them on
+	 * every fire. Only the values of the definitions known not to change, see {@link #STATIC_TYPES}, are reused.
+	 */
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static boolean CACHE_PARAMETERS = SystemProperties.getBoolean(ParameterizedTimerTrigger.class.getName() + ".cacheParameters", true);
+
+	/**
+	 * Comma separated class names of further parameter definitions whose values are reused, in addition to the
+	 * {@link #CORE_STATIC_TYPES}. Their default value must not change between fires, and their values must not be
+	 * modified once created, since one instance goes to every build of the line.
+	 */
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static String STATIC_TYPES = SystemProperties.getString(ParameterizedTimerTrigger.class.getName() + ".staticTypes", "");
+
+	/**
+	 * The core parameter definitions with a constant default, whose values are immutable. Subclasses are not
+	 * included, they may compute their values.
+	 */
+	private static final Set<String> CORE_STATIC_TYPES = Set.of(
+			StringParameterDefinition.class.getName(),
+			TextParameterDefinition.class.getName(),
+			BooleanParameterDefinition.class.getName(),
+			ChoiceParameterDefinition.class.getName(),
+			PasswordParameterDefinition.class.getName());
+
+	/**
+	 * {@link #STATIC_TYPES} as last parsed
+	 */
+	private static volatile Map.Entry<String, Set<String>> staticTypes = Map.entry("", Set.of());
+
+	private static final AtomicReferenceFieldUpdater<ParameterizedTimerTrigger, Snapshot> SNAPSHOT =
+			AtomicReferenceFieldUpdater.newUpdater(ParameterizedTimerTrigger.class, Snapshot.class, "snapshot");
+
+	/**
+	 * Everything the tick reads, replaced as a whole and never modified, so that a tick running concurrently with
+	 * {@link #start(Job, boolean)} sees either the old or the new state.
+	 */
+	private transient volatile Snapshot snapshot;
+	/**
+	 * Set by {@link #stop()}, so that a compilation still pending then does not register the trigger again.
+	 */
+	private transient volatile boolean stopped;
 	private final String parameterizedSpecification;
 
 	@DataBoundConstructor
 	public ParameterizedTimerTrigger(String parameterizedSpecification) {
 		this.parameterizedSpecification = parameterizedSpecification;
-		this.cronTabList = ParameterizedCronTabList.create(parameterizedSpecification);
+		this.snapshot = new Snapshot(null, ParameterizedCronTabList.create(parameterizedSpecification), null, null);
 	}
 
 	@Override
@@ -43,54 +112,169 @@ public class ParameterizedTimerTrigger extends Trigger<Job> {
 		LOGGER.fine("tried to run from base Trigger, nothing will happen");
 	}
 
+	/**
+	 * Resolves the parameter values of a line, reusing the ones of earlier fires for as long as the parameter
+	 * definitions of the job stay the same.
+	 */
+	private List<ParameterValue> configurePropertyValues(Snapshot snapshot, ParameterizedCronTab cronTab) {
+		assert snapshot.job != null : "job must not be null if this was 'started'";
+		ParametersDefinitionProperty paramDefProp = (ParametersDefinitionProperty) snapshot.job
+				.getProperty(ParametersDefinitionProperty.class);
+		if (paramDefProp == null) {
+			return Collections.emptyList();
+		}
+		if (!CACHE_PARAMETERS) {
+			return resolve(paramDefProp, cronTab.getParameterValues()).values();
+		}
+		ResolvedParameters resolved = snapshot.resolvedParameters;
+		if (resolved == null || resolved.property != paramDefProp) {
+			// saving the job replaces the property, which makes this the configuration version
+			resolved = new ResolvedParameters(paramDefProp);
+			// if start() swapped the snapshot meanwhile, the values are used once and resolved again next time
+			SNAPSHOT.compareAndSet(this, snapshot, snapshot.withResolvedParameters(resolved));
+		}
+		return resolved.lines.computeIfAbsent(cronTab, tab -> resolve(paramDefProp, tab.getParameterValues())).values();
+	}
+
 	/**
 	 * this method started out as hudson.model.AbstractProject.getDefaultParametersValues()
 	 * @param parameterValues A map of parameters and their values
-	 * @return the ParameterValues as set from the crontab row or their defaults
+	 * @return the ParameterValues as set from the crontab row or their defaults, except for the ones of definitions
+	 * not known to be static, which are left to compute on each fire
 	 */
-	private List<ParameterValue> configurePropertyValues(Map<String, String> parameterValues) {
-		assert job != null : "job must not be null if this was 'started'";
-		ParametersDefinitionProperty paramDefProp = (ParametersDefinitionProperty) job
-				.getProperty(ParametersDefinitionProperty.class);
-		List<ParameterValue> defValues = new ArrayList<>();
+	private static ResolvedLine resolve(ParametersDefinitionProperty paramDefProp, Map<String, String> parameterValues) {
+		List<ParameterDefinition> definitions = paramDefProp.getParameterDefinitions();
+		ParameterValue[] values = new ParameterValue[definitions.size()];
+		ParameterDefinition[] dynamic = new ParameterDefinition[definitions.size()];
+		String[] texts = new String[definitions.size()];
 
 		/* Scan for all parameter with an associated default values */
-		for (ParameterDefinition paramDefinition : paramDefProp.getParameterDefinitions()) {
-			ParameterValue defaultValue = paramDefinition.getDefaultParameterValue();
-
-			if (parameterValues.containsKey(paramDefinition.getName())) {
-				ParameterizedStaplerRequest request = new ParameterizedStaplerRequest(
-						parameterValues.get(paramDefinition.getName()));
-				ParameterValue value = paramDefinition.createValue(request);
-				if (value!= null) {
-					defValues.add(value);
-				} else {
-					LOGGER.warning("Cannot create value for " + paramDefinition.getName());
-				}
-			} else if (defaultValue != null) {
-				defValues.add(defaultValue);
+		for (int i = 0; i < values.length; i++) {
+			ParameterDefinition paramDefinition = definitions.get(i);
+			String text = parameterValues.get(paramDefinition.getName());
+			if (!isStatic(paramDefinition)) {
+				dynamic[i] = paramDefinition;
+				texts[i] = text;
+			} else {
+				values[i] = value(paramDefinition, text);
 			}
 		}
+		return new ResolvedLine(values, dynamic, texts);
+	}
+
+	/**
+	 * @param text the value from the line, null to use the default
+	 */
+	@CheckForNull
+	private static ParameterValue value(ParameterDefinition paramDefinition, @CheckForNull String text) {
+		if (text == null) {
+			return paramDefinition.getDefaultParameterValue();
+		}
+		ParameterValue value = createValue(paramDefinition, text);
+		if (value == null) {
+			LOGGER.warning("Cannot create value for " + paramDefinition.getName());
+		}
+		return value;
+	}
+
+	/**
+	 * @return true if the values of the definition can be reused, see {@link #STATIC_TYPES}
+	 */
+	private static boolean isStatic(ParameterDefinition paramDefinition) {
+		String type = paramDefinition.getClass().getName();
+		if (CORE_STATIC_TYPES.contains(type)) {
+			return true;
+		}
+		String configured = Util.fixNull(STATIC_TYPES);
+		Map.Entry<String, Set<String>> parsed = staticTypes;
+		if (!parsed.getKey().equals(configured)) {
+			// parsed again only when changed from the script console
+			parsed = Map.entry(configured, Set.copyOf(List.of(Util.tokenize(configured, ", "))));
+			staticTypes = parsed;
+		}
+		return parsed.getValue().contains(type);
+	}
+
+	/**
+	 * Creates the value of a parameter from its text in the line. Plain {@link SimpleParameterDefinition}s take the
+	 * text directly, other definitions get it through a {@link ParameterizedStaplerRequest}, like a form submission.
+	 */
+	@CheckForNull
+	static ParameterValue createValue(ParameterDefinition paramDefinition, String value) {
+		if (paramDefinition instanceof SimpleParameterDefinition && BINDS_AS_TEXT.get(paramDefinition.getClass())) {
+			return ((SimpleParameterDefinition) paramDefinition).createValue(value);
+		}
+		return paramDefinition.createValue(new ParameterizedStaplerRequest(value));
+	}
 
-		return defValues;
+	/**
+	 * Whether a {@link SimpleParameterDefinition} binds a request the way {@link SimpleParameterDefinition} does, by
+	 * passing the single request parameter to {@link SimpleParameterDefinition#createValue(String)}.
+	 */
+	private static final ClassValue<Boolean> BINDS_AS_TEXT = new ClassValue<>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			return !Util.isOverridden(SimpleParameterDefinition.class, type.asSubclass(SimpleParameterDefinition.class), "createValue", StaplerRequest2.class)
+					&& !Util.isOverridden(SimpleParameterDefinition.class, type.asSubclass(SimpleParameterDefinition.class), "createValue", StaplerRequest.class);
+		}
+	};
+
+	/**
+	 * Drops the parameter values resolved so far, e.g. because the job was reconfigured.
+	 */
+	void clearResolvedParameters() {
+		SNAPSHOT.updateAndGet(this, current -> current == null ? null : current.withResolvedParameters(null));
 	}
 
 	public void checkCronTabsAndRun(Calendar calendar) {
 		LOGGER.fine("checking and maybe running at " + calendar);
-		List<ParameterizedCronTab> cronTabs = cronTabList.check(calendar);
+		Snapshot snapshot = this.snapshot;
+		if (snapshot == null || snapshot.cronTabList == null) {
+			return;
+		}
+		FireDispatcher.Batch batch = FireDispatcher.get().newBatch();
+		run(snapshot, snapshot.cronTabList.check(TimeUnit.MILLISECONDS.toMinutes(calendar.getTimeInMillis())), batch);
+		batch.submit();
+	}
 
+	/**
+	 * Resolves the parameters of each given line and adds one build per line to the batch, unless the
+	 * {@link FirePolicy} of the line skips it.
+	 *
+	 * @param cronTabs the lines that are due, normally from {@link ParameterizedTriggerRegistry#poll(long)}
+	 * @param batch collects the builds of the current tick for the {@link FireDispatcher}
+	 */
+	void run(List<ParameterizedCronTab> cronTabs, FireDispatcher.Batch batch) {
+		run(snapshot, cronTabs, batch);
+	}
+
+	private void run(Snapshot snapshot, List<ParameterizedCronTab> cronTabs, FireDispatcher.Batch batch) {
+		Job job = snapshot.job;
+		assert job != null : "job must not be null, if this was 'started'";
+		int quietPeriod = quietPeriod(job.getFullName());
 		cronTabs.forEach(cronTab -> {
 			Map<String, String> parameterValues = cronTab.getParameterValues();
-			ParametersAction parametersAction = new ParametersAction(configurePropertyValues(parameterValues));
-			assert job != null : "job must not be null, if this was 'started'";
-			if (job instanceof AbstractProject) {
-				((AbstractProject) job).scheduleBuild2(0, (Cause)null, causeAction(parameterValues), parametersAction);
-			} else if (job instanceof WorkflowJob) {
-				((WorkflowJob) job).scheduleBuild2(0, causeAction(parameterValues), parametersAction);
+			List<ParameterValue> values = configurePropertyValues(snapshot, cronTab);
+			if (!InFlightIndex.get().shouldFire(job, cronTab.getFirePolicy(), values)) {
+				return;
 			}
+			ParametersAction parametersAction = new ParametersAction(values);
+			FireRequest request = new FireRequest(job, causeAction(parameterValues), parametersAction);
+			request.quietPeriod = quietPeriod;
+			batch.add(request);
 		});
 	}
 
+	/**
+	 * @return the quiet period of the builds fired for the job, stable for a given name and {@link #SPREAD}
+	 */
+	static int quietPeriod(String fullName) {
+		int spread = SPREAD;
+		// hashed like H, so the offset does not move between ticks or restarts, but salted so that it does not follow
+		// the first H of the specification, which draws from the job name alone
+		return spread > 1 ? Hash.from(fullName + "#spread").next(spread) : 0;
+	}
+
 	private CauseAction causeAction(Map<String, String> parameterValues) {
 		return new CauseAction(new ParameterizedTimerTriggerCause(parameterValues));
 	}
@@ -98,13 +282,183 @@ public class ParameterizedTimerTrigger extends Trigger<Job> {
 	@Override
 	public void start(Job project, boolean newInstance) {
 		this.job = project;
+		stopped = false;
+		if (!StartupCompilation.get().defer(this, project)) {
+			compile(project);
+		}
+	}
 
-		try {// reparse the tabs with the job as the hash
-			cronTabList = ParameterizedCronTabList.create(parameterizedSpecification, Hash.from(project.getFullName()));
+	/**
+	 * Resolves the schedule for the job, publishes it and registers the trigger, unless it was stopped meanwhile.
+	 */
+	void compile(Job project) {
+		Snapshot current = snapshot;
+		String hashedFor = project.getFullName();
+		ParameterizedCronTabList cronTabList = current != null ? current.cronTabList : null;
+		ResolvedParameters resolvedParameters = current != null ? current.resolvedParameters : null;
+		try {// resolve the H fields with the job as the hash, the rest of the parse is reused
+			if (current == null || current.cronTabList == null || !hashedFor.equals(current.hashedFor)) {
+				ParameterizedTimerTrigger predecessor = ParameterizedTriggerRegistry.get().predecessor(project, this);
+				Snapshot previous = predecessor != null ? predecessor.snapshot : null;
+				if (previous != null && hashedFor.equals(previous.hashedFor) && previous.cronTabList != null) {
+					// e.g. a Pipeline redefining its triggers on every build, keep what did not change
+					cronTabList = ParsedSpecification.of(parameterizedSpecification).resolve(Hash.from(hashedFor),
+							ParsedSpecification.of(predecessor.parameterizedSpecification), previous.cronTabList);
+					resolvedParameters = inheritResolvedParameters(previous.resolvedParameters, cronTabList);
+					if (!parameterizedSpecification.equals(predecessor.parameterizedSpecification)) {
+						ScheduleCache.get().markDirty();
+					}
+				} else {
+					// unchanged since the last restart, no need to parse
+					cronTabList = ScheduleCache.get().lookup(hashedFor, parameterizedSpecification);
+					if (cronTabList == null) {
+						cronTabList = ParsedSpecification.of(parameterizedSpecification).resolve(Hash.from(hashedFor));
+					}
+					resolvedParameters = null;
+				}
+			} else {
+				hashedFor = current.hashedFor;
+			}
 		} catch (IllegalArgumentException e) {
 			// this shouldn't fail because we've already parsed stuff in the constructor,
 			// so if it fails, use whatever 'tabs' that we already have.
 			LOGGER.log(Level.FINE, "Failed to parse crontab spec: " + spec, e);
+			hashedFor = current != null ? current.hashedFor : null;
+		}
+		snapshot = new Snapshot(project, cronTabList, hashedFor, resolvedParameters);
+		if (stopped) {
+			return;
+		}
+		ParameterizedTriggerRegistry registry = ParameterizedTriggerRegistry.get();
+		registry.register(this);
+		if (stopped) {
+			// stop() ran while registering, its unregister may have come first
+			registry.unregister(this);
+		}
+	}
+
+	/**
+	 * @return the parameter values the replaced trigger resolved for the lines this trigger kept
+	 */
+	@CheckForNull
+	private static ResolvedParameters inheritResolvedParameters(@CheckForNull ResolvedParameters inherited,
+			ParameterizedCronTabList cronTabList) {
+		if (inherited == null) {
+			return null;
+		}
+		ResolvedParameters resolved = new ResolvedParameters(inherited.property);
+		for (ParameterizedCronTab cronTab : cronTabList.getCronTabs()) {
+			ResolvedLine line = inherited.lines.get(cronTab);
+			if (line != null) {
+				resolved.lines.put(cronTab, line);
+			}
+		}
+		return resolved;
+	}
+
+	@Override
+	public void stop() {
+		stopped = true;
+		ParameterizedTriggerRegistry.get().unregister(this);
+		super.stop();
+	}
+
+	/**
+	 * @return the resolved schedule, null if the specification cannot be parsed
+	 */
+	@CheckForNull
+	ParameterizedCronTabList getCronTabList() {
+		Snapshot snapshot = this.snapshot;
+		return snapshot != null ? snapshot.cronTabList : null;
+	}
+
+	/**
+	 * @return the job name the schedule was resolved with, null if it was not resolved for a job
+	 */
+	@CheckForNull
+	String getHashedFor() {
+		Snapshot snapshot = this.snapshot;
+		return snapshot != null ? snapshot.hashedFor : null;
+	}
+
+	/**
+	 * @return the job this trigger was started for, null if it was never started
+	 */
+	@CheckForNull
+	Job getJob() {
+		Snapshot snapshot = this.snapshot;
+		return snapshot != null ? snapshot.job : null;
+	}
+
+	/**
+	 * The state of a trigger as of its last {@link #start(Job, boolean)}.
+	 */
+	private static final class Snapshot {
+		/**
+		 * null until started
+		 */
+		final Job job;
+		/**
+		 * null if the specification could not be parsed
+		 */
+		final ParameterizedCronTabList cronTabList;
+		/**
+		 * the job name {@link #cronTabList} was resolved with, null while it is resolved without hash
+		 */
+		final String hashedFor;
+		/**
+		 * the parameter values resolved so far, null if none
+		 */
+		final ResolvedParameters resolvedParameters;
+
+		Snapshot(Job job, ParameterizedCronTabList cronTabList, String hashedFor, ResolvedParameters resolvedParameters) {
+			this.job = job;
+			this.cronTabList = cronTabList;
+			this.hashedFor = hashedFor;
+			this.resolvedParameters = resolvedParameters;
+		}
+
+		Snapshot withResolvedParameters(ResolvedParameters resolvedParameters) {
+			return new Snapshot(job, cronTabList, hashedFor, resolvedParameters);
+		}
+	}
+
+	/**
+	 * The parameter values of the lines, resolved for one version of the parameter definitions. Lines are added
+	 * as they first fire, the rest never changes.
+	 */
+	private static final class ResolvedParameters {
+		final ParametersDefinitionProperty property;
+		final Map<ParameterizedCronTab, ResolvedLine> lines = new ConcurrentHashMap<>();
+
+		ResolvedParameters(ParametersDefinitionProperty property) {
+			this.property = property;
+		}
+	}
+
+	private static final class ResolvedLine {
+		private final ParameterValue[] values;
+		private final ParameterDefinition[] dynamic;
+		/**
+		 * the values of the {@link #dynamic} definitions in the line, null for their default
+		 */
+		private final String[] texts;
+
+		ResolvedLine(ParameterValue[] values, ParameterDefinition[] dynamic, String[] texts) {
+			this.values = values;
+			this.dynamic = dynamic;
+			this.texts = texts;
+		}
+
+		List<ParameterValue> values() {
+			List<ParameterValue> result = new ArrayList<>(values.length);
+			for (int i = 0; i < values.length; i++) {
+				ParameterValue value = dynamic[i] != null ? value(dynamic[i], texts[i]) : values[i];
+				if (value != null) {
+					result.add(value);
+				}
+			}
+			return result;
 		}
 	}
 
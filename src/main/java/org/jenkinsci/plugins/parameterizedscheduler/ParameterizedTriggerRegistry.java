@@ -0,0 +1,218 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import com.google.common.cache.CacheBuilder;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.listeners.ItemListener;
+import jenkins.model.ParameterizedJobMixIn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Keeps track of every started {@link ParameterizedTimerTrigger}, so that {@link Cron} only visits the jobs
+ * that actually carry a parameterized schedule instead of walking the whole item tree every minute.
+ * <p>
+ * Triggers register themselves in {@link ParameterizedTimerTrigger#start(Job, boolean)} and leave in
+ * {@link ParameterizedTimerTrigger#stop()}; {@link ItemListenerImpl} cleans up after items that go away
+ * without their triggers being stopped. The registry also owns the {@link NextFireIndex} of all registered lines.
+ * Triggers are also kept by job, so that the events of an item only touch the triggers of that item.
+ * <p>
+ * The last trigger unregistered for a job is remembered until the job gets a new one, see {@link #predecessor}, so
+ * that a trigger replaced on every build, as Pipelines do, hands its state over instead of starting from scratch.
+ * It is forgotten as soon as any trigger registers for the job, when the job no longer has a parameterized trigger,
+ * or when the job itself is collected.
+ */
+@Extension
+public class ParameterizedTriggerRegistry {
+	private static final Logger LOGGER = Logger.getLogger(ParameterizedTriggerRegistry.class.getName());
+
+	private final Set<ParameterizedTimerTrigger> triggers = ConcurrentHashMap.newKeySet();
+	private final Map<Job<?, ?>, Set<ParameterizedTimerTrigger>> byJob = new ConcurrentHashMap<>();
+	private final NextFireIndex<ParameterizedTimerTrigger> index = new NextFireIndex<>();
+	private final Map<Job<?, ?>, ParameterizedTimerTrigger> stopped = CacheBuilder.newBuilder().weakKeys()
+			.<Job<?, ?>, ParameterizedTimerTrigger>build().asMap();
+
+	public static ParameterizedTriggerRegistry get() {
+		return ExtensionList.lookupSingleton(ParameterizedTriggerRegistry.class);
+	}
+
+	/**
+	 * Registers the trigger, or re-indexes its lines if it was registered already. A trigger whose specification
+	 * does not parse, e.g. one loaded from an older configuration, has nothing to schedule and is left out.
+	 */
+	void register(@NonNull ParameterizedTimerTrigger trigger) {
+		Job<?, ?> job = trigger.getJob();
+		ParameterizedCronTabList cronTabList = trigger.getCronTabList();
+		if (cronTabList == null) {
+			LOGGER.warning(() -> "Not scheduling " + (job != null ? job.getFullName() : "a job")
+					+ ", its parameterized specification cannot be parsed: " + trigger.getParameterizedSpecification());
+			remove(trigger, job);
+			return;
+		}
+		if (job != null) {
+			// whatever it took over from its predecessor, the stopped trigger is superseded now
+			stopped.remove(job);
+			byJob.computeIfAbsent(job, j -> ConcurrentHashMap.newKeySet()).add(trigger);
+		}
+		triggers.add(trigger);
+		index.schedule(trigger, cronTabList.getCronTabs(), currentMinute());
+	}
+
+	void unregister(@NonNull ParameterizedTimerTrigger trigger) {
+		Job<?, ?> job = trigger.getJob();
+		remove(trigger, job);
+		if (job != null && getTriggers(job).isEmpty()) {
+			// unless a replacement registered first, in which case there is nobody left to hand over to
+			stopped.put(job, trigger);
+		}
+	}
+
+	private void remove(@NonNull ParameterizedTimerTrigger trigger, @CheckForNull Job<?, ?> job) {
+		triggers.remove(trigger);
+		index.remove(trigger);
+		if (job != null) {
+			byJob.computeIfPresent(job, (j, registered) -> {
+				registered.remove(trigger);
+				return registered.isEmpty() ? null : registered;
+			});
+		}
+	}
+
+	/**
+	 * @return the triggers registered for the job
+	 */
+	@NonNull
+	private List<ParameterizedTimerTrigger> getTriggers(@NonNull Job<?, ?> job) {
+		Set<ParameterizedTimerTrigger> registered = byJob.get(job);
+		return registered == null ? List.of() : new ArrayList<>(registered);
+	}
+
+	/**
+	 * @return the trigger the given one replaces on the job, whether it was stopped already or not, null if the job
+	 * had none
+	 */
+	@CheckForNull
+	ParameterizedTimerTrigger predecessor(@NonNull Job<?, ?> job, @NonNull ParameterizedTimerTrigger trigger) {
+		ParameterizedTimerTrigger previous = stopped.remove(job);
+		if (previous != null && previous != trigger) {
+			return previous;
+		}
+		for (ParameterizedTimerTrigger registered : getTriggers(job)) {
+			if (registered != trigger) {
+				return registered;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param epochMinute the minute being evaluated
+	 * @return the lines firing at that minute, by trigger
+	 */
+	@NonNull
+	Map<ParameterizedTimerTrigger, List<ParameterizedCronTab>> poll(long epochMinute) {
+		return index.poll(epochMinute);
+	}
+
+	static long currentMinute() {
+		return TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+	}
+
+	/**
+	 * @return a snapshot of the registered triggers, safe to iterate while triggers come and go
+	 */
+	@NonNull
+	public List<ParameterizedTimerTrigger> getTriggers() {
+		return new ArrayList<>(triggers);
+	}
+
+	/**
+	 * @return true if the trigger is still the one configured on its job. Triggers can be replaced without
+	 * being stopped (e.g. a Pipeline redefining its {@code pipelineTriggers}), so the registry double checks.
+	 */
+	static boolean isCurrent(@NonNull ParameterizedTimerTrigger trigger) {
+		Job<?, ?> job = trigger.getJob();
+		return job instanceof ParameterizedJobMixIn.ParameterizedJob
+				&& ((ParameterizedJobMixIn.ParameterizedJob<?, ?>) job).getTriggers().containsValue(trigger);
+	}
+
+	/**
+	 * Drops the triggers of the given item, or of any job nested below it. Only a folder has to look at other jobs.
+	 */
+	void unregisterAll(@NonNull Item item) {
+		if (item instanceof Job) {
+			getTriggers((Job<?, ?>) item).forEach(this::unregister);
+			stopped.remove(item);
+			return;
+		}
+		String prefix = item.getFullName() + '/';
+		for (Job<?, ?> job : new ArrayList<>(byJob.keySet())) {
+			if (job.getFullName().startsWith(prefix)) {
+				getTriggers(job).forEach(this::unregister);
+			}
+		}
+		stopped.keySet().removeIf(job -> job.getFullName().startsWith(prefix));
+	}
+
+	/**
+	 * Re-synchronizes the registrations of a job with its current configuration, and makes its triggers resolve
+	 * parameter values anew.
+	 */
+	void refresh(@NonNull Item item) {
+		if (!(item instanceof ParameterizedJobMixIn.ParameterizedJob) || !(item instanceof Job)) {
+			return;
+		}
+		Map<?, ?> configured = ((ParameterizedJobMixIn.ParameterizedJob<?, ?>) item).getTriggers();
+		for (ParameterizedTimerTrigger trigger : getTriggers((Job<?, ?>) item)) {
+			trigger.clearResolvedParameters();
+			if (!isCurrent(trigger)) {
+				unregister(trigger);
+			}
+		}
+		if (configured.values().stream().noneMatch(ParameterizedTimerTrigger.class::isInstance)) {
+			// no trigger is going to take over, e.g. the schedule was removed from the job
+			stopped.remove(item);
+		}
+		for (Object trigger : configured.values()) {
+			if (trigger instanceof ParameterizedTimerTrigger && ((ParameterizedTimerTrigger) trigger).getJob() == item
+					&& !triggers.contains(trigger)) {
+				register((ParameterizedTimerTrigger) trigger);
+			}
+		}
+	}
+
+	@Extension
+	public static class ItemListenerImpl extends ItemListener {
+
+		@Override
+		public void onCreated(Item item) {
+			get().refresh(item);
+		}
+
+		@Override
+		public void onUpdated(Item item) {
+			get().refresh(item);
+		}
+
+		@Override
+		public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+			// registrations are by trigger, not by name, so a rename or move only needs a consistency check
+			get().refresh(item);
+		}
+
+		@Override
+		public void onDeleted(Item item) {
+			get().unregisterAll(item);
+		}
+	}
+}
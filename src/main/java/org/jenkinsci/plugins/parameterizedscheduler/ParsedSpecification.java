@@ -0,0 +1,244 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.scheduler.CronTab;
+import hudson.scheduler.CronTabList;
+import hudson.scheduler.Hash;
+import jenkins.util.SystemProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The part of a parsed specification that does not depend on the job: its lines with their parameters, fire policy
+ * and timezone, along with the schedule resolved without a hash, which validates the cron fields.
+ * <p>
+ * {@link #resolve(Hash)} turns it into the schedule of a job by running the cron parser again only for the lines
+ * using {@code H}, the other lines are shared as they are. Parsed specifications are kept by text, so recreating a
+ * trigger with an unchanged specification, e.g. on every save, does not parse it again. Lines are kept by text as
+ * well, so an edited specification only parses the lines that changed.
+ */
+final class ParsedSpecification {
+
+	private static final int CAPACITY = SystemProperties.getInteger(ParsedSpecification.class.getName() + ".capacity", 1000);
+	private static final int LINE_CAPACITY = SystemProperties.getInteger(ParsedSpecification.class.getName() + ".lineCapacity", 10000);
+	/**
+	 * soft, so that the specifications of deleted jobs go once memory gets short rather than staying until evicted
+	 */
+	private static final Cache<String, ParsedSpecification> CACHE = CacheBuilder.newBuilder().maximumSize(CAPACITY).softValues().build();
+	private static final Cache<String, Line> LINES = CacheBuilder.newBuilder().maximumSize(LINE_CAPACITY).softValues().build();
+
+	private final List<Line> lines;
+	private final String timezone;
+	private final ParameterizedCronTabList unhashed;
+
+	private ParsedSpecification(String cronTabSpecification) {
+		List<Line> lines = new ArrayList<>();
+		List<ParameterizedCronTab> cronTabs = new ArrayList<>();
+		int lineNumber = 0;
+		String timezone = null;
+		for (String line : cronTabSpecification.split("\\r?\\n")) {
+			line = line.trim();
+			if(line.length() > 0 && !line.startsWith("#")) {
+				lineNumber++;
+				if(lineNumber == 1 && line.startsWith("TZ=")) {
+					timezone = CronTabList.getValidTimezone(line.replace("TZ=", ""));
+					if (timezone == null) {
+						throw new IllegalArgumentException("Invalid or unsupported timezone '" + line + "'");
+					}
+				} else {
+					try {
+						Line parsed = Line.of(line, lineNumber, timezone);
+						cronTabs.add(parsed.unhashed());
+						lines.add(parsed);
+					} catch (IllegalArgumentException e) {
+						throw new IllegalArgumentException(String.format("Invalid input: \"%s\": %s", line, e), e);
+					}
+				}
+			}
+		}
+		this.lines = List.copyOf(lines);
+		this.timezone = timezone;
+		this.unhashed = new ParameterizedCronTabList(List.copyOf(cronTabs), timezone);
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the specification is invalid
+	 */
+	@NonNull
+	static ParsedSpecification of(@NonNull String cronTabSpecification) {
+		ParsedSpecification parsed = CACHE.getIfPresent(cronTabSpecification);
+		if (parsed == null) {
+			parsed = new ParsedSpecification(cronTabSpecification);
+			CACHE.put(cronTabSpecification, parsed);
+		}
+		return parsed;
+	}
+
+	/**
+	 * @param hash spreads the {@code H} fields, null to not spread them
+	 */
+	@NonNull
+	ParameterizedCronTabList resolve(@CheckForNull Hash hash) {
+		if (hash == null || lines.stream().noneMatch(Line::isHashed)) {
+			return unhashed;
+		}
+		List<ParameterizedCronTab> cronTabs = new ArrayList<>(lines.size());
+		for (int i = 0; i < lines.size(); i++) {
+			Line line = lines.get(i);
+			cronTabs.add(line.isHashed() ? line.resolve(hash) : unhashed.getCronTabs().get(i));
+		}
+		return new ParameterizedCronTabList(List.copyOf(cronTabs), timezone);
+	}
+
+	/**
+	 * Resolves this specification for a job whose previous specification was already resolved with the same hash,
+	 * keeping the lines that did not change. A line using {@code H} is only kept if no line using {@code H} changed
+	 * before it, since they draw from the hash in turn. From the first changed one on, the lines using {@code H} are
+	 * resolved again, after replaying the draws of the ones kept before it, so that the result is the same as
+	 * {@link #resolve(Hash)}.
+	 *
+	 * @param hash a fresh hash, from the same seed as the one {@code resolved} was resolved with
+	 * @param previous the specification the job had so far
+	 * @param resolved {@code previous} resolved with {@code hash}
+	 */
+	@NonNull
+	ParameterizedCronTabList resolve(@CheckForNull Hash hash, @NonNull ParsedSpecification previous,
+			@NonNull ParameterizedCronTabList resolved) {
+		if (previous == this) {
+			return resolved;
+		}
+		List<ParameterizedCronTab> previousTabs = resolved.getCronTabs();
+		if (hash == null || previousTabs.size() != previous.lines.size()) {
+			return resolve(hash);
+		}
+		List<ParameterizedCronTab> cronTabs = new ArrayList<>(lines.size());
+		boolean sameDraws = true;
+		for (int i = 0; i < lines.size(); i++) {
+			Line line = lines.get(i);
+			boolean unchanged = i < previous.lines.size() && line.sameAs(previous.lines.get(i));
+			if (!line.isHashed()) {
+				cronTabs.add(unchanged ? previousTabs.get(i) : unhashed.getCronTabs().get(i));
+			} else if (sameDraws && unchanged) {
+				cronTabs.add(previousTabs.get(i));
+			} else {
+				if (sameDraws) {
+					sameDraws = false;
+					// the kept lines did not draw from this hash yet
+					for (int j = 0; j < i; j++) {
+						if (lines.get(j).isHashed()) {
+							lines.get(j).resolve(hash);
+						}
+					}
+				}
+				cronTabs.add(line.resolve(hash));
+			}
+		}
+		return new ParameterizedCronTabList(List.copyOf(cronTabs), timezone);
+	}
+
+	/**
+	 * A single line split into its policy, cron fields and parameters.
+	 */
+	static final class Line {
+		private final String text;
+		private final String cronFields;
+		private final int lineNumber;
+		private final String timezone;
+		private final Map<String, String> parameters;
+		private final FirePolicy firePolicy;
+		private final long lineKey;
+		private final boolean hashed;
+		private volatile ParameterizedCronTab unhashed;
+
+		private Line(String text, String cronFields, int lineNumber, String timezone, Map<String, String> parameters,
+				FirePolicy firePolicy, long lineKey) {
+			this.text = text;
+			this.cronFields = cronFields;
+			this.lineNumber = lineNumber;
+			this.timezone = timezone;
+			this.parameters = parameters;
+			this.firePolicy = firePolicy;
+			this.lineKey = lineKey;
+			// H and the @ aliases are the only fields a hash changes
+			this.hashed = cronFields.indexOf('H') != -1 || cronFields.startsWith("@");
+		}
+
+		/**
+		 * Like {@link #parse(String, int, String)}, but reuses the line parsed earlier for the same text.
+		 */
+		@NonNull
+		static Line of(String line, int lineNumber, @CheckForNull String timezone) {
+			String key = timezone + "\n" + lineNumber + "\n" + line;
+			Line parsed = LINES.getIfPresent(key);
+			if (parsed == null) {
+				parsed = parse(line, lineNumber, timezone);
+				// validates the cron fields before the line is shared
+				parsed.unhashed();
+				LINES.put(key, parsed);
+			}
+			return parsed;
+		}
+
+		@NonNull
+		static Line parse(String line, int lineNumber, @CheckForNull String timezone) {
+			String text = line;
+			long lineKey = ((long) lineNumber << 32) | (line.hashCode() & 0xffffffffL);
+			FirePolicy firePolicy = FirePolicy.ALWAYS;
+			if (line.startsWith("[")) {
+				int end = line.indexOf(']');
+				firePolicy = end == -1 ? null : FirePolicy.fromToken(line.substring(1, end));
+				if (firePolicy == null) {
+					throw new IllegalArgumentException("Unknown fire policy, expected one of [always], [coalesce] or [skip-if-running]");
+				}
+				line = line.substring(end + 1).trim();
+			}
+			int firstPercentIdx = line.indexOf("%");
+			if(firstPercentIdx != -1) {
+				String cronLinePart = line.substring(0, firstPercentIdx).trim();
+				String paramsLinePart = line.substring(firstPercentIdx + 1).trim();
+				return new Line(text, cronLinePart, lineNumber, timezone, ParameterMap.of(new ParameterParser().parse(paramsLinePart)), firePolicy, lineKey);
+			} else {
+				return new Line(text, line, lineNumber, timezone, ParameterMap.EMPTY, firePolicy, lineKey);
+			}
+		}
+
+		boolean isHashed() {
+			return hashed;
+		}
+
+		/**
+		 * @return true if the other line has the same text at the same place, with the same timezone
+		 */
+		boolean sameAs(Line other) {
+			return lineNumber == other.lineNumber && text.equals(other.text) && Objects.equals(timezone, other.timezone);
+		}
+
+		/**
+		 * @return the line resolved without hash, parsed once
+		 */
+		@NonNull
+		ParameterizedCronTab unhashed() {
+			ParameterizedCronTab cronTab = unhashed;
+			if (cronTab == null) {
+				cronTab = resolve(null);
+				unhashed = cronTab;
+			}
+			return cronTab;
+		}
+
+		@NonNull
+		ParameterizedCronTab resolve(@CheckForNull Hash hash) {
+			if (hash == null && unhashed != null) {
+				return unhashed;
+			}
+			CronTab cronTab = new CronTab(cronFields, lineNumber, hash, timezone);
+			return new ParameterizedCronTab(cronTab, parameters, timezone, lineKey, firePolicy);
+		}
+	}
+}
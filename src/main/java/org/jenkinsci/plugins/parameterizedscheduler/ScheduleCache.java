@@ -0,0 +1,299 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.Util;
+import hudson.init.Terminator;
+import hudson.model.Job;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The resolved schedules of all jobs, kept in {@code $JENKINS_HOME/parameterized-scheduler/schedules.bin} so that
+ * after a restart the jobs whose specification did not change skip parsing it.
+ * <p>
+ * Each entry holds the job name, which is the hash seed, a digest of the specification, and the lines with their
+ * fields, parameters, fire policy and sanity warning. The fields are kept as the bitmasks of their
+ * {@link CompiledCronTab}, with any {@code H} already resolved, so a line is restored without running the cron
+ * parser. The file is read in full on first use rather than mapped: all of it is needed once at startup, and a
+ * mapping would keep the file open until collected, which makes replacing it in {@link #save} fail on Windows.
+ * Entries are decoded on lookup, with the parameters restored as shared {@link ParameterMap}s. A file written by
+ * another version of this format or of Jenkins is ignored, an entry that does not match or does not decode is parsed
+ * as usual. The file is written after startup and on shutdown if anything changed.
+ */
+@Extension
+public class ScheduleCache {
+	private static final Logger LOGGER = Logger.getLogger(ScheduleCache.class.getName());
+
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static boolean ENABLED = SystemProperties.getBoolean(ScheduleCache.class.getName() + ".enabled", true);
+
+	private static final int MAGIC = 0x50534348;
+	private static final int VERSION = 3;
+
+	private ByteBuffer buffer;
+	private final Map<String, Entry> entries = new HashMap<>();
+	private boolean loaded;
+	private volatile boolean dirty;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public static ScheduleCache get() {
+		return ExtensionList.lookupSingleton(ScheduleCache.class);
+	}
+
+	File getFile() {
+		return new File(Jenkins.get().getRootDir(), "parameterized-scheduler/schedules.bin");
+	}
+
+	/**
+	 * @param fullName the job the specification is resolved for, which is also the hash seed
+	 * @return the schedule saved for the job, null if there is none for this specification
+	 */
+	@CheckForNull
+	ParameterizedCronTabList lookup(@NonNull String fullName, @NonNull String specification) {
+		if (!ENABLED) {
+			return null;
+		}
+		ByteBuffer buffer;
+		Entry entry;
+		synchronized (this) {
+			load();
+			buffer = this.buffer;
+			entry = entries.get(fullName);
+		}
+		ParameterizedCronTabList cronTabList = null;
+		if (entry != null && entry.digest.equals(Util.getDigestOf(specification))) {
+			try {
+				cronTabList = decode(buffer.duplicate().position(entry.offset));
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.FINE, "Ignoring the saved schedule of " + fullName, e);
+			}
+		}
+		if (cronTabList == null) {
+			misses.incrementAndGet();
+			dirty = true;
+		} else {
+			hits.incrementAndGet();
+		}
+		return cronTabList;
+	}
+
+	/**
+	 * Notes that a schedule was resolved without the cache, so that the file gets written again.
+	 */
+	void markDirty() {
+		dirty = true;
+	}
+
+	private void load() {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+		File file = getFile();
+		if (!file.exists()) {
+			return;
+		}
+		try {
+			ByteBuffer read = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+			if (read.getInt() != MAGIC || read.getInt() != VERSION || !Objects.equals(Jenkins.VERSION, readString(read))) {
+				LOGGER.log(Level.FINE, "Ignoring {0} written by another version", file);
+				return;
+			}
+			int count = read.getInt();
+			for (int i = 0; i < count; i++) {
+				String fullName = readString(read);
+				String digest = readString(read);
+				int length = read.getInt();
+				entries.put(fullName, new Entry(digest, read.position()));
+				read.position(read.position() + length);
+			}
+			buffer = read;
+		} catch (IOException | RuntimeException e) {
+			LOGGER.log(Level.FINE, "Ignoring " + file, e);
+			entries.clear();
+		}
+	}
+
+	@NonNull
+	private static ParameterizedCronTabList decode(ByteBuffer in) {
+		String timezone = readString(in);
+		int count = in.getInt();
+		List<ParameterizedCronTab> cronTabs = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			long lineKey = in.getLong();
+			FirePolicy firePolicy = FirePolicy.values()[in.get()];
+			CompiledCronTab compiled = CompiledCronTab.of(in.getLong(), in.getLong(), in.getLong(), in.getLong(), in.get(), timezone);
+			String sanity = readString(in);
+			int parameterCount = in.getInt();
+			Map<String, String> parameters = new LinkedHashMap<>();
+			for (int j = 0; j < parameterCount; j++) {
+				parameters.put(readString(in), readString(in));
+			}
+			cronTabs.add(new ParameterizedCronTab(compiled, parameters, timezone, lineKey, firePolicy, sanity));
+		}
+		return new ParameterizedCronTabList(List.copyOf(cronTabs), timezone);
+	}
+
+	/**
+	 * Writes the schedules of the given triggers, if any schedule was resolved without the cache since the last
+	 * time, and lets go of the file read so far.
+	 */
+	synchronized void save(@NonNull Collection<ParameterizedTimerTrigger> triggers) {
+		buffer = null;
+		entries.clear();
+		loaded = true;
+		if (!ENABLED || !dirty) {
+			return;
+		}
+		dirty = false;
+		Path file = getFile().toPath();
+		try {
+			Files.createDirectories(file.getParent());
+			Path tmp = Files.createTempFile(file.getParent(), "schedules", ".tmp");
+			try {
+				int count = 0;
+				ByteArrayOutputStream body = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream(body);
+				for (ParameterizedTimerTrigger trigger : triggers) {
+					count += encode(trigger, out) ? 1 : 0;
+				}
+				out.flush();
+				try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+					stream.writeInt(MAGIC);
+					stream.writeInt(VERSION);
+					writeString(stream, Jenkins.VERSION);
+					stream.writeInt(count);
+					body.writeTo(stream);
+				}
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to write " + file, e);
+		}
+	}
+
+	/**
+	 * @return false if the schedule of the trigger cannot be saved, e.g. because it was not resolved for its job
+	 */
+	private static boolean encode(ParameterizedTimerTrigger trigger, DataOutputStream out) throws IOException {
+		Job<?, ?> job = trigger.getJob();
+		ParameterizedCronTabList cronTabList = trigger.getCronTabList();
+		if (job == null || cronTabList == null || !job.getFullName().equals(trigger.getHashedFor())) {
+			return false;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream entry = new DataOutputStream(bytes);
+		writeString(entry, cronTabList.getTimezone());
+		entry.writeInt(cronTabList.getCronTabs().size());
+		for (ParameterizedCronTab cronTab : cronTabList.getCronTabs()) {
+			CompiledCronTab compiled = cronTab.getCompiled();
+			if (compiled == null) {
+				return false;
+			}
+			entry.writeLong(cronTab.getLineKey());
+			entry.writeByte(cronTab.getFirePolicy().ordinal());
+			entry.writeLong(compiled.minutes);
+			entry.writeLong(compiled.hours);
+			entry.writeLong(compiled.daysOfMonth);
+			entry.writeLong(compiled.months);
+			entry.writeByte(compiled.daysOfWeek);
+			writeString(entry, cronTab.checkSanity());
+			Map<String, String> parameters = cronTab.getParameterValues();
+			entry.writeInt(parameters.size());
+			for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+				writeString(entry, parameter.getKey());
+				writeString(entry, parameter.getValue());
+			}
+		}
+		entry.flush();
+		writeString(out, job.getFullName());
+		writeString(out, Util.getDigestOf(trigger.getParameterizedSpecification()));
+		out.writeInt(bytes.size());
+		bytes.writeTo(out);
+		return true;
+	}
+
+	private static void writeString(DataOutputStream out, @CheckForNull String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	@CheckForNull
+	private static String readString(ByteBuffer in) {
+		int length = in.getInt();
+		if (length == -1) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Terminator
+	public static void shutdown() {
+		for (ScheduleCache cache : ExtensionList.lookup(ScheduleCache.class)) {
+			cache.save(ParameterizedTriggerRegistry.get().getTriggers());
+		}
+	}
+
+	/**
+	 * @return number of schedules restored from the file
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return number of schedules that had to be resolved
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	private static final class Entry {
+		final String digest;
+		final int offset;
+
+		Entry(String digest, int offset) {
+			this.digest = digest;
+			this.offset = offset;
+		}
+	}
+}
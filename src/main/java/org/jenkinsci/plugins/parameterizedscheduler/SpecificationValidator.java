@@ -0,0 +1,125 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.scheduler.CronTabList;
+import hudson.util.FormValidation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Validates a specification line by line for {@link DescriptorImpl#doCheckParameterizedSpecification}, and
+ * remembers the outcome of each line by its text and the parameter names of the job, so that a check after an
+ * edit only parses the lines that changed. Every problem of every line is reported.
+ */
+final class SpecificationValidator {
+
+	private static final int CAPACITY = 10000;
+
+	private final Map<String, LineResult> results = new LinkedHashMap<String, LineResult>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, LineResult> eldest) {
+			return size() > CAPACITY;
+		}
+	};
+
+	private final AtomicLong validatedLines = new AtomicLong();
+
+	@NonNull
+	FormValidation validate(@NonNull String specification, @CheckForNull ParametersDefinitionProperty property) {
+		List<String> names = property != null ? property.getParameterDefinitionNames() : Collections.emptyList();
+		Set<String> definedNames = new HashSet<>(names);
+		String fingerprint = String.join("\u0000", names);
+		List<FormValidation> validations = new ArrayList<>();
+		String timezone = null;
+		int lineNumber = 0;
+		boolean firstRule = true;
+		for (String line : specification.split("\\r?\\n", -1)) {
+			lineNumber++;
+			String trimmed = line.trim();
+			if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+				continue;
+			}
+			if (firstRule && trimmed.startsWith("TZ=")) {
+				firstRule = false;
+				timezone = CronTabList.getValidTimezone(trimmed.replace("TZ=", ""));
+				if (timezone == null) {
+					validations.add(FormValidation.error(Messages.ParameterizedTimerTrigger_LineDiagnostic(
+							String.valueOf(lineNumber), "Invalid or unsupported timezone '" + trimmed + "'")));
+				}
+				continue;
+			}
+			firstRule = false;
+			String key = fingerprint + '\n' + timezone + '\n' + trimmed;
+			LineResult result;
+			synchronized (results) {
+				result = results.get(key);
+			}
+			if (result == null) {
+				result = validate(trimmed, timezone, names, definedNames);
+				synchronized (results) {
+					results.put(key, result);
+				}
+			}
+			result.addTo(validations, lineNumber, line.indexOf(trimmed.charAt(0)));
+		}
+		return FormValidation.aggregate(validations);
+	}
+
+	private LineResult validate(String line, String timezone, List<String> names, Set<String> definedNames) {
+		validatedLines.incrementAndGet();
+		LineResult result = new LineResult();
+		int idx = line.indexOf('%');
+		// the cron part is checked on its own, so that a bad parameter does not hide a bad schedule or the reverse
+		String cronPart = idx == -1 ? line : line.substring(0, idx).trim();
+		try {
+			String msg = ParameterizedCronTab.create(cronPart, 1, null, timezone).checkSanity();
+			if (msg != null) {
+				result.diagnostics.add(new ParameterParser.Diagnostic(0, 0, msg, false));
+			}
+		} catch (IllegalArgumentException e) {
+			String msg = cronPart.contains("**") ? Messages.ParameterizedTimerTrigger_MissingWhitespace()
+					: String.format("Invalid input: \"%s\": %s", cronPart, e.getMessage());
+			result.diagnostics.add(new ParameterParser.Diagnostic(0, 0, msg, true));
+		}
+		if (idx != -1 && idx + 1 < line.length()) {
+			result.diagnostics.addAll(new ParameterParser().diagnose(line, idx + 1, 0, names, definedNames));
+		}
+		return result;
+	}
+
+	/**
+	 * @return number of lines parsed so far, as opposed to looked up
+	 */
+	long getValidatedLines() {
+		return validatedLines.get();
+	}
+
+	/**
+	 * The problems of a line, independent of where the line is in the specification.
+	 */
+	private static final class LineResult {
+		private final List<ParameterParser.Diagnostic> diagnostics = new ArrayList<>(0);
+
+		/**
+		 * @param indent number of characters before the trimmed line, to correct the columns
+		 */
+		void addTo(List<FormValidation> validations, int lineNumber, int indent) {
+			for (ParameterParser.Diagnostic diagnostic : diagnostics) {
+				String line = String.valueOf(lineNumber);
+				String message = diagnostic.getColumn() > 0
+						? Messages.ParameterParser_Position(line, String.valueOf(diagnostic.getColumn() + indent), diagnostic.getMessage())
+						: Messages.ParameterizedTimerTrigger_LineDiagnostic(line, diagnostic.getMessage());
+				validations.add(diagnostic.isError() ? FormValidation.error(message) : FormValidation.warning(message));
+			}
+		}
+	}
+}
@@ -0,0 +1,247 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Job;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Moves the compilation of the schedules out of {@link ParameterizedTimerTrigger#start(Job, boolean)} while Jenkins
+ * loads its jobs, onto a pool with a thread per core. A trigger is registered once its schedule is compiled.
+ * <p>
+ * A tick that comes before every schedule is compiled first waits for the remaining ones, up to {@link #TICK_WAIT},
+ * see {@link #awaitPending(long)}, so no build is missed unless a specification takes unreasonably long. Once the
+ * jobs are loaded, the schedules started later are compiled right away, the total and the slowest specifications
+ * are logged and the schedules are saved to the {@link ScheduleCache}.
+ */
+@Extension
+public class StartupCompilation {
+	private static final Logger LOGGER = Logger.getLogger(StartupCompilation.class.getName());
+
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static boolean ENABLED = SystemProperties.getBoolean(StartupCompilation.class.getName() + ".enabled", true);
+
+	/**
+	 * Threads compiling schedules, 0 for one per core.
+	 */
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static int PARALLELISM = SystemProperties.getInteger(StartupCompilation.class.getName() + ".parallelism", 0);
+
+	/**
+	 * Milliseconds a tick waits for the schedules still compiling at startup before it polls without them, so that
+	 * one pathological specification does not hold up every other job.
+	 */
+	@Restricted(NoExternalUse.class)
+	@SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "tunable from the script console")
+	public static long TICK_WAIT = SystemProperties.getLong(StartupCompilation.class.getName() + ".tickWait", TimeUnit.SECONDS.toMillis(10));
+
+	private static final int SLOWEST = 10;
+
+	private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+	private ExecutorService executor;
+
+	private int compiled;
+	private long started;
+	private long finished;
+	private long work;
+	private final PriorityQueue<Pending> slowest = new PriorityQueue<>(Comparator.comparingLong((Pending p) -> p.duration));
+	private String report;
+	private boolean reporting;
+
+	public static StartupCompilation get() {
+		return ExtensionList.lookupSingleton(StartupCompilation.class);
+	}
+
+	/**
+	 * Compiles the schedule of the trigger in the background if Jenkins is still starting.
+	 *
+	 * @return false if the caller is to compile it right away
+	 */
+	synchronized boolean defer(@NonNull ParameterizedTimerTrigger trigger, @NonNull Job<?, ?> job) {
+		Jenkins jenkins = Jenkins.getInstanceOrNull();
+		if (!ENABLED || reporting || jenkins == null || jenkins.getInitLevel() == InitMilestone.COMPLETED) {
+			return false;
+		}
+		submit(trigger, job);
+		return true;
+	}
+
+	void submit(@NonNull ParameterizedTimerTrigger trigger, @NonNull Job<?, ?> job) {
+		Pending compilation = new Pending(trigger, job);
+		pending.add(compilation);
+		executor().execute(compilation);
+	}
+
+	private synchronized ExecutorService executor() {
+		if (executor == null) {
+			int parallelism = PARALLELISM > 0 ? PARALLELISM : Runtime.getRuntime().availableProcessors();
+			executor = Executors.newFixedThreadPool(parallelism,
+					new NamingThreadFactory(new DaemonThreadFactory(), StartupCompilation.class.getName()));
+			started = System.nanoTime();
+		}
+		return executor;
+	}
+
+	/**
+	 * Compiles the schedules still waiting for a thread on the calling thread and waits for the ones in progress.
+	 */
+	void awaitPending() {
+		for (Pending compilation; (compilation = pending.peek()) != null; ) {
+			compilation.run();
+			try {
+				compilation.done.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Waits at most the given time for the schedules still compiling. Unlike {@link #awaitPending()} it leaves the
+	 * compilation to the pool, since a specification the calling thread started on could not be given up. The
+	 * schedules not compiled in time are registered when they are done, and fire from the next tick on.
+	 *
+	 * @return false if some schedules were not compiled in time
+	 */
+	boolean awaitPending(long timeoutMillis) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		for (Pending compilation; (compilation = pending.peek()) != null; ) {
+			try {
+				if (!compilation.done.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+					LOGGER.log(Level.WARNING, "Gave up waiting {0}ms for {1} parameterized schedules still compiling, e.g. {2}",
+							new Object[] {timeoutMillis, pending.size(), compilation.job.getFullName()});
+					return false;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private synchronized void record(Pending compilation) {
+		compiled++;
+		work += compilation.duration;
+		finished = System.nanoTime();
+		slowest.add(compilation);
+		if (slowest.size() > SLOWEST) {
+			slowest.poll();
+		}
+	}
+
+	/**
+	 * Logs how long the compilation took once the last schedule is compiled, and lets the pool go. The jobs, and so
+	 * their triggers, are all started by then.
+	 */
+	@Initializer(after = InitMilestone.JOB_CONFIG_ADAPTED)
+	public static void reportWhenDone() {
+		StartupCompilation compilation = get();
+		synchronized (compilation) {
+			// nothing is deferred past this point, so the report covers every deferred schedule
+			compilation.reporting = true;
+		}
+		Timer.get().submit(() -> {
+			compilation.awaitPending();
+			String report = compilation.finish();
+			if (report != null) {
+				LOGGER.info(report);
+			}
+			ScheduleCache.get().save(ParameterizedTriggerRegistry.get().getTriggers());
+		});
+	}
+
+	@CheckForNull
+	synchronized String finish() {
+		if (executor == null) {
+			return null;
+		}
+		executor.shutdown();
+		executor = null;
+		List<Pending> slowestFirst = new ArrayList<>(slowest);
+		slowestFirst.sort(slowest.comparator().reversed());
+		StringBuilder slowestNames = new StringBuilder();
+		for (Pending compilation : slowestFirst) {
+			if (slowestNames.length() > 0) {
+				slowestNames.append(", ");
+			}
+			slowestNames.append(compilation.job.getFullName()).append(" (")
+					.append(TimeUnit.NANOSECONDS.toMillis(compilation.duration)).append("ms)");
+		}
+		report = String.format("Compiled %d parameterized schedules in %dms, %dms of work, slowest: %s", compiled,
+				TimeUnit.NANOSECONDS.toMillis(finished - started), TimeUnit.NANOSECONDS.toMillis(work), slowestNames);
+		compiled = 0;
+		work = 0;
+		slowest.clear();
+		return report;
+	}
+
+	/**
+	 * @return the timing of the last startup, null if no schedule was compiled in the background
+	 */
+	@CheckForNull
+	public synchronized String getReport() {
+		return report;
+	}
+
+	private final class Pending implements Runnable {
+		private final ParameterizedTimerTrigger trigger;
+		private final Job<?, ?> job;
+		private final AtomicBoolean claimed = new AtomicBoolean();
+		private final CountDownLatch done = new CountDownLatch(1);
+		private long duration;
+
+		Pending(ParameterizedTimerTrigger trigger, Job<?, ?> job) {
+			this.trigger = trigger;
+			this.job = job;
+		}
+
+		@Override
+		public void run() {
+			if (!claimed.compareAndSet(false, true)) {
+				return;
+			}
+			long start = System.nanoTime();
+			try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+				trigger.compile(job);
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.WARNING, "Failed to compile the parameterized schedule of " + job.getFullName(), e);
+			} finally {
+				duration = System.nanoTime() - start;
+				record(this);
+				pending.remove(this);
+				done.countDown();
+			}
+		}
+	}
+}
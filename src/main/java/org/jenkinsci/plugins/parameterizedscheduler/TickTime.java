@@ -0,0 +1,63 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.time.ZoneId;
+import java.util.Calendar;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One minute of a tick as seen from each timezone of the specifications, so that the lines of all jobs in a
+ * zone share a single conversion instead of each converting the minute on its own. Zones are converted on first
+ * use and remembered for the rest of the tick, from any thread.
+ * <p>
+ * The local fields come from the offset the zone rules give for the instant, see {@link CronFields#of(long, ZoneId)}.
+ * Across a daylight saving transition this means that local minutes skipped when clocks go forward never occur, and
+ * local minutes repeated when clocks go back occur twice, as they do for {@code CronTab}.
+ */
+final class TickTime {
+
+	final long epochMinute;
+	private final ZoneId defaultZone;
+	private final Map<ZoneId, CronFields> fields = new ConcurrentHashMap<>(4);
+	private final Map<ZoneId, Calendar> calendars = new ConcurrentHashMap<>(4);
+
+	/**
+	 * @param epochMinute minutes since the epoch
+	 */
+	TickTime(long epochMinute) {
+		this.epochMinute = epochMinute;
+		this.defaultZone = TimeZone.getDefault().toZoneId();
+	}
+
+	/**
+	 * @param timezone as in {@code TZ=}, null for the default timezone
+	 * @return the fields of this minute in that timezone
+	 */
+	@NonNull
+	CronFields fields(@CheckForNull String timezone) {
+		return fields.computeIfAbsent(zone(timezone), zone -> CronFields.of(epochMinute, zone));
+	}
+
+	/**
+	 * @param timezone as in {@code TZ=}, null for the default timezone
+	 * @return a calendar of this minute in that timezone, the caller's to modify
+	 */
+	@NonNull
+	Calendar calendar(@CheckForNull String timezone) {
+		Calendar calendar = calendars.computeIfAbsent(zone(timezone), zone -> {
+			Calendar c = Calendar.getInstance(TimeZone.getTimeZone(zone));
+			c.setTimeInMillis(TimeUnit.MINUTES.toMillis(epochMinute));
+			return c;
+		});
+		return (Calendar) calendar.clone();
+	}
+
+	private ZoneId zone(@CheckForNull String timezone) {
+		return timezone == null ? defaultZone : CronFields.zone(timezone);
+	}
+}
@@ -0,0 +1,80 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import hudson.model.CauseAction;
+import hudson.model.FreeStyleProject;
+import hudson.model.Queue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@WithJenkins
+class AdmissionControlTest {
+
+	@AfterEach
+	void reset() {
+		AdmissionControl.RATE = 0;
+		AdmissionControl.MAX_QUEUE = 0;
+		AdmissionControl.HOLD_CAPACITY = 10000;
+	}
+
+	@Test
+	void queueDepth(JenkinsRule r) throws Exception {
+		AdmissionControl.MAX_QUEUE = 1;
+		FreeStyleProject p1 = r.createFreeStyleProject();
+		FreeStyleProject p2 = r.createFreeStyleProject();
+		AdmissionControl admission = AdmissionControl.get();
+		FireDispatcher dispatcher = FireDispatcher.get();
+
+		FireDispatcher.Batch batch = dispatcher.newBatch();
+		batch.add(request(p1));
+		batch.add(request(p2));
+		batch.submit();
+		assertThat(p1.isInQueue(), is(true));
+		assertThat(p2.isInQueue(), is(false));
+		assertThat(admission.getHeld(), is(1));
+		assertThat(admission.getDeferred(), is(1L));
+
+		Queue.getInstance().clear();
+		dispatcher.drain();
+		assertThat(p2.isInQueue(), is(true));
+		assertThat(admission.getHeld(), is(0));
+		assertThat(admission.getReleased(), is(1L));
+		Queue.getInstance().clear();
+	}
+
+	@Test
+	void holdingBufferOverflow(JenkinsRule r) throws Exception {
+		AdmissionControl.RATE = 0.001;
+		AdmissionControl.BURST = 1;
+		AdmissionControl.HOLD_CAPACITY = 1;
+		FreeStyleProject p1 = r.createFreeStyleProject();
+		FreeStyleProject p2 = r.createFreeStyleProject();
+		FreeStyleProject p3 = r.createFreeStyleProject();
+		AdmissionControl admission = AdmissionControl.get();
+		try {
+			FireDispatcher.Batch batch = FireDispatcher.get().newBatch();
+			batch.add(request(p1));
+			batch.add(request(p2));
+			batch.add(request(p3));
+			batch.submit();
+			assertThat(p1.isInQueue(), is(true));
+			assertThat(admission.getHeld(), is(1));
+			assertThat(admission.getDropped(), is(1L));
+		} finally {
+			AdmissionControl.BURST = 100;
+			Queue.getInstance().clear();
+		}
+	}
+
+	private static FireRequest request(FreeStyleProject p) {
+		FireRequest request = new FireRequest(p, new CauseAction(new ParameterizedTimerTriggerCause(Collections.emptyMap())));
+		request.quietPeriod = 600;
+		return request;
+	}
+}
@@ -0,0 +1,123 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import hudson.scheduler.CronTab;
+import hudson.scheduler.CronTabList;
+import hudson.scheduler.Hash;
+import org.junit.jupiter.api.Test;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompiledCronTabTest {
+
+	// 2024-02-27T00:00Z, spanning the end of a leap February
+	private static final long START = TimeUnit.MILLISECONDS.toMinutes(1708992000000L);
+
+	@Test
+	void matchesLikeCronTab() {
+		TimeZone timeZone = TimeZone.getTimeZone("UTC");
+		Calendar calendar = Calendar.getInstance(timeZone);
+		for (String spec : new String[] {"* * * * *", "H * * * *", "H H * * *", "H/15 H(8-18) * * 1-5", "0 0 29 2 *",
+				"*/7 3,4 * * 0", "30 2 * * 7", "@daily", "@hourly"}) {
+			CronTab cronTab = new CronTab(spec, 1, Hash.from("some/job"));
+			CronTabList cronTabList = new CronTabList(Collections.singleton(cronTab));
+			CompiledCronTab compiled = CompiledCronTab.compile(cronTab, null);
+			assertNotNull(compiled, spec);
+
+			for (long minute = START; minute < START + TimeUnit.DAYS.toMinutes(4); minute++) {
+				calendar.setTimeInMillis(TimeUnit.MINUTES.toMillis(minute));
+				assertEquals(cronTabList.check(calendar), compiled.matches(CronFields.of(minute, timeZone)),
+						spec + " at " + calendar.getTime());
+			}
+		}
+	}
+
+	@Test
+	void restoredFromBitsIsShared() {
+		for (String spec : new String[] {"* * * * *", "H H * * 1-5", "H/15 H(8-18) * * 1-5", "0 0 29 2 *",
+				"*/7 3,4 * * 0", "@weekly", "H H 1,15 1-11 *"}) {
+			CompiledCronTab compiled = CompiledCronTab.compile(new CronTab(spec, 1, Hash.from("some/job"), "UTC"), "UTC");
+			assertNotNull(compiled, spec);
+			assertSame(compiled, CompiledCronTab.of(compiled.minutes, compiled.hours, compiled.daysOfMonth,
+					compiled.months, compiled.daysOfWeek, "UTC"), spec);
+		}
+		// both 0 and 7 stand for Sunday
+		assertSame(CompiledCronTab.compile(new CronTab("30 2 * * 0"), null), CompiledCronTab.compile(new CronTab("30 2 * * 7"), null));
+	}
+
+	@Test
+	void ceilMatchesCronTab() {
+		for (String spec : new String[] {"* * * * *", "H H * * *", "H/15 H(8-18) * * 1-5", "*/7 3,4 * * 0", "30 2 * * 7",
+				"@weekly", "@monthly", "0 0 1 1 *", "59 23 31 12 *"}) {
+			CronTab cronTab = new CronTab(spec, 1, Hash.from("some/job"), "UTC");
+			CompiledCronTab compiled = CompiledCronTab.compile(cronTab, "UTC");
+			assertNotNull(compiled, spec);
+			for (long minute = START; minute < START + TimeUnit.DAYS.toMinutes(400); minute += 997) {
+				assertEquals(TimeUnit.MILLISECONDS.toMinutes(cronTab.ceil(TimeUnit.MINUTES.toMillis(minute)).getTimeInMillis()),
+						compiled.ceil(minute), spec);
+			}
+		}
+		assertEquals(ParameterizedCronTab.NEVER, CompiledCronTab.compile(new CronTab("0 0 30 2 *"), null).ceil(START));
+	}
+
+	@Test
+	void ceilFollowsMatchesAcrossTransitions() {
+		// 2024-03-31T01:00Z and 2024-10-27T01:00Z in Europe/Paris, 2024-10-05T15:30Z in Australia/Lord_Howe
+		long[] transitions = {28530780L, 28833180L, 28802370L};
+		for (String timezone : new String[] {"Europe/Paris", "Australia/Lord_Howe", "America/New_York"}) {
+			TimeZone timeZone = TimeZone.getTimeZone(timezone);
+			for (String spec : new String[] {"30 2 * * *", "0 3 * * *", "H/20 * * * *", "15 2 * * *", "* 2 * * *"}) {
+				CompiledCronTab compiled = CompiledCronTab.compile(new CronTab(spec, 1, Hash.from("job"), timezone), timezone);
+				for (long transition : transitions) {
+					long from = transition - 240;
+					long until = transition + 240;
+					// walk back from the end, remembering the next minute that matches
+					long next = -1;
+					for (long minute = until - 1; minute >= from; minute--) {
+						if (compiled.matches(CronFields.of(minute, timeZone))) {
+							next = minute;
+						}
+						if (next != -1) {
+							assertEquals(next, compiled.ceil(minute), spec + " in " + timezone + " from " + minute);
+						} else {
+							assertTrue(compiled.ceil(minute) >= until, spec + " in " + timezone + " from " + minute);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void interned() {
+		CompiledCronTab hourly = CompiledCronTab.compile(new CronTab("0 * * * *"), null);
+		assertSame(hourly, CompiledCronTab.compile(new CronTab("0 */1 * * *"), null));
+		assertNotSame(hourly, CompiledCronTab.compile(new CronTab("0 * * * *", 1, null, "UTC"), "UTC"));
+	}
+
+	@Test
+	void matchesLikeCronTabWithTimezone() {
+		Calendar calendar = Calendar.getInstance();
+		for (String timezone : new String[] {"America/New_York", "Asia/Kolkata", "Australia/Sydney"}) {
+			String spec = "TZ=" + timezone + "\nH 9 * * *\n15 * * * *";
+			CronTabList cronTabList = CronTabList.create(spec, Hash.from("some/job"));
+			ParameterizedCronTabList testObject = ParameterizedCronTabList.create(spec, Hash.from("some/job"));
+
+			for (long minute = START; minute < START + TimeUnit.DAYS.toMinutes(2); minute++) {
+				calendar.setTimeInMillis(TimeUnit.MINUTES.toMillis(minute));
+				assertEquals(cronTabList.check(calendar), !testObject.check(minute).isEmpty(),
+						timezone + " at " + calendar.getTime());
+				assertEquals(cronTabList.check(calendar), !testObject.check(calendar).isEmpty(),
+						timezone + " at " + calendar.getTime());
+			}
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import hudson.model.Job;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FairShareTest {
+
+	@AfterEach
+	void reset() {
+		FairShare.DEPTH = 1;
+		FairShare.QUOTA = 0;
+	}
+
+	@Test
+	void group() {
+		assertEquals("", FairShare.group("job", 1));
+		assertEquals("team", FairShare.group("team/job", 1));
+		assertEquals("team", FairShare.group("team/sub/job", 1));
+		assertEquals("team/sub", FairShare.group("team/sub/job", 2));
+		assertEquals("team", FairShare.group("team/job", 2));
+	}
+
+	@Test
+	void roundRobinAcrossFolders() {
+		List<FireRequest> requests = requests("big/a", "big/b", "big/c", "small/a", "top", "small/b");
+		assertEquals(List.of("big/a", "small/a", "top", "big/b", "small/b", "big/c"), names(new FairShare().order(requests)));
+	}
+
+	@Test
+	void orderIsKeptWithoutGrouping() {
+		FairShare.DEPTH = 0;
+		List<FireRequest> requests = requests("big/a", "big/b", "small/a");
+		assertEquals(List.of("big/a", "big/b", "small/a"), names(new FairShare().order(requests)));
+	}
+
+	@Test
+	void quota() {
+		FairShare.QUOTA = 2;
+		FairShare testObject = new FairShare();
+		assertEquals(List.of("big/a", "small/a", "big/b"), names(testObject.order(requests("big/a", "big/b", "big/c", "small/a"), 1)));
+		assertEquals(1, testObject.getOverQuota());
+		assertEquals(1, testObject.getHeld());
+
+		// still the same minute
+		assertEquals(List.of(), names(testObject.order(List.of(), 1)));
+		// the held build goes first in the next one
+		assertEquals(List.of("big/c", "big/d"), names(testObject.order(requests("big/d", "big/e"), 2)));
+		assertEquals(1, testObject.getHeld());
+		assertEquals(2, testObject.getOverQuota());
+		assertEquals(0, testObject.getDropped());
+	}
+
+	private static List<FireRequest> requests(String... fullNames) {
+		List<FireRequest> requests = new ArrayList<>();
+		for (String fullName : fullNames) {
+			Job<?, ?> job = mock(Job.class);
+			when(job.getFullName()).thenReturn(fullName);
+			requests.add(new FireRequest(job));
+		}
+		return requests;
+	}
+
+	private static List<String> names(List<FireRequest> requests) {
+		return requests.stream().map(FireRequest::toString).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,95 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import hudson.model.CauseAction;
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.StringParameterDefinition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@WithJenkins
+class FireDispatcherTest {
+
+	@AfterEach
+	void reset() {
+		FireDispatcher.ASYNC = false;
+	}
+
+	@Test
+	void synchronous(JenkinsRule r) throws Exception {
+		FreeStyleProject p = r.createFreeStyleProject();
+		FireDispatcher dispatcher = FireDispatcher.get();
+		long scheduled = dispatcher.getScheduled();
+
+		assertThat(dispatcher.submit(new FireRequest(p, new CauseAction(new ParameterizedTimerTriggerCause(Collections.emptyMap())))), is(true));
+		assertThat(p.isInQueue(), is(true));
+		assertThat(dispatcher.getScheduled(), is(scheduled + 1));
+		r.waitUntilNoActivity();
+	}
+
+	@Test
+	void batch(JenkinsRule r) throws Exception {
+		FreeStyleProject p1 = r.createFreeStyleProject();
+		FreeStyleProject p2 = r.createFreeStyleProject();
+		FireDispatcher dispatcher = FireDispatcher.get();
+		long scheduled = dispatcher.getScheduled();
+
+		FireDispatcher.Batch batch = dispatcher.newBatch();
+		batch.add(new FireRequest(p1, new CauseAction(new ParameterizedTimerTriggerCause(Collections.emptyMap()))));
+		batch.add(new FireRequest(p2, new CauseAction(new ParameterizedTimerTriggerCause(Collections.emptyMap()))));
+		assertThat(p1.isInQueue(), is(false));
+
+		batch.submit();
+		assertThat(dispatcher.getScheduled(), is(scheduled + 2));
+		// late additions go straight through
+		FreeStyleProject p3 = r.createFreeStyleProject();
+		batch.add(new FireRequest(p3, new CauseAction(new ParameterizedTimerTriggerCause(Collections.emptyMap()))));
+		assertThat(dispatcher.getScheduled(), is(scheduled + 3));
+		r.waitUntilNoActivity();
+		assertThat(p1.getLastCompletedBuild().getNumber(), is(1));
+		assertThat(p2.getLastCompletedBuild().getNumber(), is(1));
+	}
+
+	@Test
+	void asynchronous(JenkinsRule r) throws Exception {
+		FireDispatcher.ASYNC = true;
+		FreeStyleProject p = r.createFreeStyleProject();
+		p.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("foo", "lol")));
+		FireDispatcher dispatcher = FireDispatcher.get();
+		long scheduled = dispatcher.getScheduled();
+
+		ParameterizedTimerTrigger t = new ParameterizedTimerTrigger("* * * * *%foo=bar");
+		t.start(p, true);
+		p.addTrigger(t);
+		new Cron().doRun();
+
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+		while (dispatcher.getScheduled() == scheduled) {
+			assertThat("dispatched in time", System.currentTimeMillis() < deadline, is(true));
+			Thread.sleep(10);
+		}
+		assertThat(dispatcher.getPending(), is(0));
+		r.waitUntilNoActivityUpTo(30_000);
+		assertThat(p.getLastCompletedBuild().getNumber(), is(1));
+	}
+
+	@Test
+	void disabledJobIsRejected(JenkinsRule r) throws Exception {
+		FreeStyleProject p = r.createFreeStyleProject();
+		p.disable();
+		FireDispatcher dispatcher = FireDispatcher.get();
+		long rejected = dispatcher.getRejected();
+
+		dispatcher.submit(new FireRequest(p, new CauseAction(new ParameterizedTimerTriggerCause(Collections.emptyMap()))));
+		assertThat(p.isInQueue(), is(false));
+		assertThat(dispatcher.getRejected(), is(rejected + 1));
+	}
+}
@@ -0,0 +1,114 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.StringParameterDefinition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.anEmptyMap;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+@WithJenkins
+class FireJournalTest {
+
+	@AfterEach
+	void reset() {
+		FireJournal.CATCH_UP = FireJournal.CatchUp.NONE;
+	}
+
+	@Test
+	void fireIsRecordedOnceAcrossRestarts(JenkinsRule r) {
+		FireJournal.CATCH_UP = FireJournal.CatchUp.LATEST;
+		ParameterizedCronTab cronTab = ParameterizedCronTab.create("* * * * *%foo=bar", 1, null, null);
+		FireJournal journal = new FireJournal();
+		assertThat(journal.claim("job", cronTab, 100), is(true));
+		assertThat(journal.claim("other", cronTab, 100), is(true));
+		journal.commit("job", Collections.singletonList(cronTab));
+		journal.commit("other", Collections.singletonList(cronTab));
+		assertThat(journal.claim("job", cronTab, 100), is(false));
+		journal.flush(100);
+
+		FireJournal restarted = new FireJournal();
+		assertThat(restarted.claim("job", cronTab, 100), is(false));
+		assertThat(restarted.claim("job", cronTab, 101), is(true));
+		assertThat(restarted.getSuppressed(), is(1L));
+	}
+
+	@Test
+	void onlyCommittedFiresAreRecorded(JenkinsRule r) {
+		FireJournal.CATCH_UP = FireJournal.CatchUp.LATEST;
+		ParameterizedCronTab cronTab = ParameterizedCronTab.create("* * * * *%foo=bar", 1, null, null);
+		FireJournal journal = new FireJournal();
+		assertThat(journal.claim("disabled", cronTab, 100), is(true));
+		assertThat(journal.claim("fired", cronTab, 100), is(true));
+		journal.commit("fired", Collections.singletonList(cronTab));
+		journal.flush(100);
+
+		FireJournal restarted = new FireJournal();
+		assertThat(restarted.claim("disabled", cronTab, 100), is(true));
+		assertThat(restarted.claim("fired", cronTab, 100), is(false));
+	}
+
+	@Test
+	void duplicatesAreSuppressedWithoutCatchUp(JenkinsRule r) {
+		ParameterizedCronTab cronTab = ParameterizedCronTab.create("* * * * *%foo=bar", 1, null, null);
+		FireJournal journal = new FireJournal();
+		assertThat(journal.claim("job", cronTab, 100), is(true));
+		journal.commit("job", Collections.singletonList(cronTab));
+		journal.flush(100);
+
+		FireJournal restarted = new FireJournal();
+		assertThat(restarted.claim("job", cronTab, 100), is(false));
+		// nothing missed is fired either
+		assertThat(restarted.catchUp(105, Collections.emptyList()), is(anEmptyMap()));
+	}
+
+	@Test
+	void compaction(JenkinsRule r) {
+		FireJournal.CATCH_UP = FireJournal.CatchUp.LATEST;
+		ParameterizedCronTab cronTab = ParameterizedCronTab.create("* * * * *%foo=bar", 1, null, null);
+		FireJournal journal = new FireJournal();
+		journal.claim("old", cronTab, 100);
+		journal.claim("recent", cronTab, 1000);
+		journal.commit("old", Collections.singletonList(cronTab));
+		journal.commit("recent", Collections.singletonList(cronTab));
+		journal.flush(1000);
+		journal.compact(1000);
+
+		FireJournal restarted = new FireJournal();
+		assertThat(restarted.claim("old", cronTab, 100), is(true));
+		assertThat(restarted.claim("recent", cronTab, 1000), is(false));
+	}
+
+	@Test
+	void catchUp(JenkinsRule r) throws Exception {
+		FreeStyleProject p = r.createFreeStyleProject();
+		p.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("foo", "lol")));
+		ParameterizedTimerTrigger t = new ParameterizedTimerTrigger("* * * * *%foo=bar");
+		t.start(p, true);
+		FireJournal.CATCH_UP = FireJournal.CatchUp.LATEST;
+		new FireJournal().flush(100);
+
+		FireJournal.CATCH_UP = FireJournal.CatchUp.NONE;
+		assertThat(new FireJournal().catchUp(105, Collections.singletonList(t)), is(anEmptyMap()));
+
+		FireJournal.CATCH_UP = FireJournal.CatchUp.LATEST;
+		Map<ParameterizedTimerTrigger, List<ParameterizedCronTab>> latest = new FireJournal().catchUp(105, Collections.singletonList(t));
+		assertThat(latest.get(t), hasSize(1));
+
+		FireJournal.CATCH_UP = FireJournal.CatchUp.ALL;
+		FireJournal journal = new FireJournal();
+		assertThat(journal.catchUp(105, Collections.singletonList(t)).get(t), hasSize(4));
+		// only on the first tick
+		assertThat(journal.catchUp(106, Collections.singletonList(t)), is(anEmptyMap()));
+	}
+}
@@ -0,0 +1,115 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import hudson.model.Cause;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersAction;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.Queue;
+import hudson.model.StringParameterDefinition;
+import hudson.model.StringParameterValue;
+import hudson.model.queue.QueueTaskFuture;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.SleepBuilder;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@WithJenkins
+class InFlightIndexTest {
+
+	@Test
+	void queued(JenkinsRule r) throws Exception {
+		FreeStyleProject p = r.createFreeStyleProject();
+		p.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("foo", "lol")));
+		List<ParameterValue> bar = Collections.singletonList(new StringParameterValue("foo", "bar"));
+		List<ParameterValue> baz = Collections.singletonList(new StringParameterValue("foo", "baz"));
+		InFlightIndex index = InFlightIndex.get();
+
+		p.scheduleBuild2(600, new Cause.UserIdCause(), new ParametersAction(bar));
+		assertThat(index.shouldFire(p, FirePolicy.ALWAYS, bar), is(true));
+		assertThat(index.shouldFire(p, FirePolicy.COALESCE, bar), is(false));
+		assertThat(index.shouldFire(p, FirePolicy.SKIP_IF_RUNNING, bar), is(false));
+		assertThat(index.shouldFire(p, FirePolicy.COALESCE, baz), is(true));
+		assertThat(index.getCoalesced(), is(2L));
+
+		Queue.getInstance().clear();
+		assertThat(index.shouldFire(p, FirePolicy.COALESCE, bar), is(true));
+	}
+
+	@Test
+	void valuesAreCompared(JenkinsRule r) throws Exception {
+		FreeStyleProject p = r.createFreeStyleProject();
+		p.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("foo", "lol")));
+		List<ParameterValue> bar = Collections.singletonList(new OpaqueParameterValue("foo", "bar"));
+		List<ParameterValue> baz = Collections.singletonList(new OpaqueParameterValue("foo", "baz"));
+		InFlightIndex index = InFlightIndex.get();
+
+		p.scheduleBuild2(600, new Cause.UserIdCause(), new ParametersAction(bar));
+		assertThat(index.shouldFire(p, FirePolicy.COALESCE, baz), is(true));
+		assertThat(index.shouldFire(p, FirePolicy.COALESCE, Collections.singletonList(new OpaqueParameterValue("foo", "bar"))), is(false));
+		Queue.getInstance().clear();
+	}
+
+	@Test
+	void running(JenkinsRule r) throws Exception {
+		FreeStyleProject p = r.createFreeStyleProject();
+		p.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("foo", "lol")));
+		p.getBuildersList().add(new SleepBuilder(5000));
+		List<ParameterValue> bar = Collections.singletonList(new StringParameterValue("foo", "bar"));
+		InFlightIndex index = InFlightIndex.get();
+
+		QueueTaskFuture<FreeStyleBuild> build = p.scheduleBuild2(0, new Cause.UserIdCause(), new ParametersAction(bar));
+		build.waitForStart();
+		assertThat(index.shouldFire(p, FirePolicy.COALESCE, bar), is(true));
+		assertThat(index.shouldFire(p, FirePolicy.SKIP_IF_RUNNING, bar), is(false));
+		assertThat(index.getSkipped(), is(1L));
+
+		r.assertBuildStatusSuccess(build);
+		assertThat(index.shouldFire(p, FirePolicy.SKIP_IF_RUNNING, bar), is(true));
+	}
+
+	@Test
+	void skipIfRunningLine(JenkinsRule r) throws Exception {
+		FreeStyleProject p = r.createFreeStyleProject();
+		p.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("foo", "lol")));
+		p.getBuildersList().add(new SleepBuilder(5000));
+		ParameterizedTimerTrigger t = new ParameterizedTimerTrigger("[skip-if-running] * * * * *%foo=bar");
+		t.start(p, true);
+		p.addTrigger(t);
+
+		QueueTaskFuture<FreeStyleBuild> build = p.scheduleBuild2(0, new Cause.UserIdCause(),
+				new ParametersAction(new StringParameterValue("foo", "bar")));
+		build.waitForStart();
+		FireDispatcher.Batch batch = FireDispatcher.get().newBatch();
+		t.run(t.getCronTabList().getCronTabs(), batch);
+		batch.submit();
+		assertThat(p.isInQueue(), is(false));
+		r.assertBuildStatusSuccess(build);
+		r.waitUntilNoActivity();
+		assertThat(p.getLastCompletedBuild().getNumber(), is(1));
+	}
+
+	/**
+	 * Like most parameter values, equal to any other value of the same name.
+	 */
+	private static final class OpaqueParameterValue extends ParameterValue {
+		private final String value;
+
+		OpaqueParameterValue(String name, String value) {
+			super(name);
+			this.value = value;
+		}
+
+		@Override
+		public Object getValue() {
+			return value;
+		}
+	}
+}
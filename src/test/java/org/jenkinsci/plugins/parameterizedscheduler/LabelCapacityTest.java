@@ -0,0 +1,78 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import hudson.model.CauseAction;
+import hudson.model.FreeStyleProject;
+import hudson.model.Label;
+import hudson.model.Queue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@WithJenkins
+class LabelCapacityTest {
+
+	@AfterEach
+	void reset() {
+		LabelCapacity.ENABLED = false;
+	}
+
+	@Test
+	void buildsBeyondIdleExecutorsAreHeld(JenkinsRule r) throws Exception {
+		LabelCapacity.ENABLED = true;
+		Label label = Label.get("scarce");
+		r.createOnlineSlave(label);
+		FreeStyleProject p1 = r.createFreeStyleProject();
+		p1.setAssignedLabel(label);
+		FreeStyleProject p2 = r.createFreeStyleProject();
+		p2.setAssignedLabel(label);
+		FreeStyleProject p3 = r.createFreeStyleProject();
+		LabelCapacity capacity = LabelCapacity.get();
+
+		FireDispatcher.Batch batch = FireDispatcher.get().newBatch();
+		batch.add(request(p1));
+		batch.add(request(p2));
+		batch.add(request(p3));
+		batch.submit();
+		assertThat(p1.isInQueue(), is(true));
+		assertThat(p2.isInQueue(), is(false));
+		assertThat(p3.isInQueue(), is(true));
+		assertThat(capacity.getHeld(), is(1));
+		assertThat(capacity.getDeferred(), is(1L));
+
+		Queue.getInstance().clear();
+		FireDispatcher.get().drain();
+		assertThat(p2.isInQueue(), is(true));
+		assertThat(capacity.getHeld(), is(0));
+		Queue.getInstance().clear();
+	}
+
+	@Test
+	void disabled(JenkinsRule r) throws Exception {
+		Label label = Label.get("scarce");
+		r.createOnlineSlave(label);
+		FreeStyleProject p1 = r.createFreeStyleProject();
+		p1.setAssignedLabel(label);
+		FreeStyleProject p2 = r.createFreeStyleProject();
+		p2.setAssignedLabel(label);
+
+		FireDispatcher.Batch batch = FireDispatcher.get().newBatch();
+		batch.add(request(p1));
+		batch.add(request(p2));
+		batch.submit();
+		assertThat(p1.isInQueue(), is(true));
+		assertThat(p2.isInQueue(), is(true));
+		Queue.getInstance().clear();
+	}
+
+	private static FireRequest request(FreeStyleProject p) {
+		FireRequest request = new FireRequest(p, new CauseAction(new ParameterizedTimerTriggerCause(Collections.emptyMap())));
+		request.quietPeriod = 600;
+		return request;
+	}
+}
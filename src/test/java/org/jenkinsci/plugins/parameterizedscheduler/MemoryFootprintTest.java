@@ -0,0 +1,90 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import hudson.scheduler.CronTab;
+import hudson.scheduler.CronTabList;
+import hudson.scheduler.Hash;
+import org.junit.jupiter.api.Test;
+import org.netbeans.insane.scanner.CountingVisitor;
+import org.netbeans.insane.scanner.ScannerUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Measures the heap retained by the schedules of many jobs sharing a specification, against the layout every line
+ * of every job used to have: a {@link CronTab} in a {@link CronTabList} of its own and a {@link HashMap} of its
+ * parameters.
+ */
+class MemoryFootprintTest {
+	private static final Logger LOGGER = Logger.getLogger(MemoryFootprintTest.class.getName());
+
+	private static final int JOBS = 200;
+	private static final String TIMEZONE = "Europe/Paris";
+	private static final String[] CRON = {
+			"H H * * *", "H/15 * * * *", "0 2 * * 1-5", "30 6 * * *", "H 8 * * 1",
+			"0 0 1 * *", "H H(0-5) * * 6", "15 12 * * *", "0 18 * * 1-5", "@daily",
+			"45 23 * * 0", "H 4 * * *", "0 */2 * * *", "10 10 10 * *", "H(0-29) 3 * * *",
+	};
+
+	@Test
+	void retainedBytesPerTrigger() throws Exception {
+		StringBuilder specification = new StringBuilder("TZ=" + TIMEZONE + "\n");
+		for (int i = 0; i < CRON.length; i++) {
+			specification.append(CRON[i]).append(" %").append(parameters(i)).append('\n');
+		}
+		List<Object> current = new ArrayList<>();
+		List<Object> baseline = new ArrayList<>();
+		for (int job = 0; job < JOBS; job++) {
+			String fullName = "folder/job" + job;
+			current.add(ParsedSpecification.of(specification.toString()).resolve(Hash.from(fullName)));
+			baseline.add(baselineLayout(fullName));
+		}
+		int currentBytes = retainedSize(current) / JOBS;
+		int baselineBytes = retainedSize(baseline) / JOBS;
+		LOGGER.log(Level.INFO, "Retained bytes per trigger with {0} lines: {1} before, {2} now",
+				new Object[] {CRON.length, baselineBytes, currentBytes});
+		assertThat(currentBytes, lessThan(baselineBytes));
+	}
+
+	private static String parameters(int line) {
+		return "ENVIRONMENT=" + (line % 3 == 0 ? "staging" : "production") + ";SUITE=nightly;RETRIES=" + (line % 2);
+	}
+
+	/**
+	 * Every line of the job parsed on its own into a crontab list and a parameter map, and nothing else.
+	 */
+	private static List<BaselineLine> baselineLayout(String fullName) {
+		Hash hash = Hash.from(fullName);
+		List<BaselineLine> lines = new ArrayList<>();
+		for (int i = 0; i < CRON.length; i++) {
+			CronTab cronTab = new CronTab(CRON[i], i + 2, hash, TIMEZONE);
+			lines.add(new BaselineLine(cronTab, new HashMap<>(new ParameterParser().parse(parameters(i)))));
+		}
+		return lines;
+	}
+
+	private static int retainedSize(Collection<?> roots) throws Exception {
+		CountingVisitor visitor = new CountingVisitor();
+		ScannerUtils.scan(ScannerUtils.skipNonStrongReferencesFilter(), visitor, roots, false);
+		return visitor.getTotalSize();
+	}
+
+	private static final class BaselineLine {
+		final Map<String, String> parameterValues;
+		final CronTabList cronTabList;
+
+		BaselineLine(CronTab cronTab, Map<String, String> parameterValues) {
+			this.parameterValues = parameterValues;
+			this.cronTabList = new CronTabList(Collections.singleton(cronTab));
+		}
+	}
+}
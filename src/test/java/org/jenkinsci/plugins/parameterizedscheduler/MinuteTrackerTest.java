@@ -0,0 +1,50 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MinuteTrackerTest {
+
+	@Test
+	void firstTickOnlyEvaluatesItsMinute() {
+		MinuteTracker testObject = new MinuteTracker();
+		assertArrayEquals(new long[] {100}, testObject.claim(100));
+		assertArrayEquals(new long[] {101}, testObject.claim(101));
+		assertEquals(0, testObject.getSkipped());
+	}
+
+	@Test
+	void duplicateIsSuppressed() {
+		MinuteTracker testObject = new MinuteTracker();
+		testObject.claim(100);
+		assertArrayEquals(new long[0], testObject.claim(100));
+		assertArrayEquals(new long[0], testObject.claim(99));
+		assertEquals(2, testObject.getDuplicates());
+	}
+
+	@Test
+	void skippedMinutesAreReplayedInOrder() {
+		MinuteTracker testObject = new MinuteTracker();
+		testObject.claim(100);
+		assertArrayEquals(new long[] {101, 102, 103}, testObject.claim(103));
+		assertEquals(2, testObject.getSkipped());
+		assertEquals(2, testObject.getReplayed());
+	}
+
+	@Test
+	void replayIsCapped() {
+		int maxReplay = MinuteTracker.MAX_REPLAY;
+		MinuteTracker.MAX_REPLAY = 2;
+		try {
+			MinuteTracker testObject = new MinuteTracker();
+			testObject.claim(100);
+			assertArrayEquals(new long[] {108, 109, 110}, testObject.claim(110));
+			assertEquals(9, testObject.getSkipped());
+			assertEquals(2, testObject.getReplayed());
+		} finally {
+			MinuteTracker.MAX_REPLAY = maxReplay;
+		}
+	}
+}
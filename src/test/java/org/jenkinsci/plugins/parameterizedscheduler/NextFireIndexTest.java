@@ -0,0 +1,138 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import hudson.scheduler.Hash;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.anEmptyMap;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NextFireIndexTest {
+
+	// 2024-01-01T00:00Z, a Monday
+	private static final long MIDNIGHT = TimeUnit.MILLISECONDS.toMinutes(1704067200000L);
+
+	private static ParameterizedCronTab tab(String line) {
+		return ParameterizedCronTab.create(line, 1, Hash.from(line), "UTC");
+	}
+
+	@Test
+	void ceil() {
+		assertEquals(MIDNIGHT, tab("0 0 * * *").ceil(MIDNIGHT));
+		assertEquals(MIDNIGHT + 60, tab("0 1 * * *").ceil(MIDNIGHT));
+		assertEquals(MIDNIGHT + 24 * 60, tab("0 0 * * *").ceil(MIDNIGHT + 1));
+		assertEquals(ParameterizedCronTab.NEVER, tab("0 0 30 2 *").ceil(MIDNIGHT));
+	}
+
+	@Test
+	void pollOnlyReturnsDueLines() {
+		NextFireIndex<String> index = new NextFireIndex<>();
+		ParameterizedCronTab hourly = tab("0 * * * *%a=1");
+		ParameterizedCronTab daily = tab("0 0 * * *%a=2");
+		index.schedule("job", Arrays.asList(hourly, daily), MIDNIGHT);
+		assertThat(index.size(), is(2));
+
+		Map<String, List<ParameterizedCronTab>> due = index.poll(MIDNIGHT);
+		assertThat(due.get("job"), contains(hourly, daily));
+		assertThat(index.peek(), is(MIDNIGHT + 60));
+
+		assertThat(index.poll(MIDNIGHT + 1), is(anEmptyMap()));
+		assertThat(index.poll(MIDNIGHT + 60).get("job"), contains(hourly));
+	}
+
+	@Test
+	void missedMinuteIsNotFired() {
+		NextFireIndex<String> index = new NextFireIndex<>();
+		ParameterizedCronTab daily = tab("0 0 * * *");
+		index.schedule("job", Collections.singletonList(daily), MIDNIGHT);
+
+		assertThat(index.poll(MIDNIGHT + 5), is(anEmptyMap()));
+		assertThat(index.peek(), is(MIDNIGHT + 24 * 60));
+	}
+
+	@Test
+	void removeAndReschedule() {
+		NextFireIndex<String> index = new NextFireIndex<>();
+		index.schedule("job", Collections.singletonList(tab("0 0 * * *")), MIDNIGHT);
+		index.remove("job");
+		assertThat(index.size(), is(0));
+		assertThat(index.poll(MIDNIGHT), is(anEmptyMap()));
+
+		ParameterizedCronTab hourly = tab("0 * * * *");
+		index.schedule("job", Collections.singletonList(tab("0 0 * * *")), MIDNIGHT);
+		index.schedule("job", Collections.singletonList(hourly), MIDNIGHT);
+		assertThat(index.size(), is(1));
+		assertThat(index.poll(MIDNIGHT).get("job"), contains(hourly));
+	}
+
+	@Test
+	void identicalSchedulesAreShared() {
+		NextFireIndex<String> index = new NextFireIndex<>();
+		ParameterizedCronTab a = tab("0 2 * * *%ENV=a");
+		ParameterizedCronTab b = tab("0 2 * * *%ENV=b");
+		ParameterizedCronTab other = tab("0 2 * * *%ENV=c");
+		index.schedule("job", Arrays.asList(a, b), MIDNIGHT);
+		index.schedule("other", Collections.singletonList(other), MIDNIGHT);
+		assertThat(index.size(), is(1));
+
+		Map<String, List<ParameterizedCronTab>> due = index.poll(MIDNIGHT + 120);
+		assertThat(due.get("job"), contains(a, b));
+		assertThat(due.get("other"), contains(other));
+
+		index.remove("job");
+		assertThat(index.size(), is(1));
+		index.remove("other");
+		assertThat(index.size(), is(0));
+	}
+
+	@Test
+	void timezone() {
+		ParameterizedCronTab tokyoMidnight = ParameterizedCronTab.create("0 0 * * *", 1, null, "Asia/Tokyo");
+		assertEquals(MIDNIGHT + 15 * 60, tokyoMidnight.ceil(MIDNIGHT));
+	}
+
+	@Test
+	void skippedLocalMinuteDoesNotFire() {
+		// on 2024-03-31 Paris goes from 02:00 straight to 03:00
+		List<Long> fires = fires("TZ=Europe/Paris\n30 2 * * *%a=1", minute("2024-03-30T00:00:00Z"), minute("2024-04-01T01:00:00Z"));
+		assertThat(fires, contains(minute("2024-03-30T01:30:00Z"), minute("2024-04-01T00:30:00Z")));
+	}
+
+	@Test
+	void repeatedLocalMinuteFiresTwice() {
+		// on 2024-10-27 Paris goes from 03:00 back to 02:00, so 02:30 comes once in summer time and once in winter time
+		List<Long> fires = fires("TZ=Europe/Paris\n30 2 * * *%a=1", minute("2024-10-26T00:00:00Z"), minute("2024-10-28T00:00:00Z"));
+		assertThat(fires, contains(minute("2024-10-26T00:30:00Z"), minute("2024-10-27T00:30:00Z"), minute("2024-10-27T01:30:00Z")));
+	}
+
+	/**
+	 * Polls the index every minute from {@code from} to {@code until}, excluded, the way the tick does.
+	 *
+	 * @return the minutes the only line of the specification fired at
+	 */
+	private static List<Long> fires(String specification, long from, long until) {
+		NextFireIndex<String> index = new NextFireIndex<>();
+		index.schedule("job", ParsedSpecification.of(specification).resolve(null).getCronTabs(), from);
+		List<Long> fires = new ArrayList<>();
+		for (long minute = from; minute < until; minute++) {
+			if (index.poll(minute).containsKey("job")) {
+				fires.add(minute);
+			}
+		}
+		return fires;
+	}
+
+	private static long minute(String instant) {
+		return TimeUnit.SECONDS.toMinutes(Instant.parse(instant).getEpochSecond());
+	}
+}
@@ -0,0 +1,53 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ParameterMapTest {
+
+	@Test
+	void behavesLikeTheParsedMap() {
+		Map<String, String> parsed = new ParameterParser().parse("one=1;two=2;three=");
+		ParameterMap map = ParameterMap.of(parsed);
+		assertEquals(parsed, map);
+		assertEquals(map, parsed);
+		assertEquals(parsed.hashCode(), map.hashCode());
+		assertEquals(parsed.toString(), map.toString());
+		assertEquals("2", map.get("two"));
+		assertEquals("", map.get("three"));
+		assertNull(map.get("four"));
+		assertFalse(map.containsKey("four"));
+		assertThrows(UnsupportedOperationException.class, () -> map.put("four", "4"));
+	}
+
+	@Test
+	void identicalParametersAreShared() {
+		ParameterMap map = ParameterMap.of(new ParameterParser().parse("one=1;two=2"));
+		assertSame(map, ParameterMap.of(new ParameterParser().parse("one=1;two=2")));
+		assertSame(map, ParameterMap.of(map));
+		assertSame(ParameterMap.EMPTY, ParameterMap.of(new HashMap<>()));
+		// same entries in another order are printed differently, so they are kept apart
+		Map<String, String> reversed = new LinkedHashMap<>();
+		reversed.put("two", "2");
+		reversed.put("one", "1");
+		assertNotSame(map, ParameterMap.of(reversed));
+		assertEquals("{two=2, one=1}", ParameterMap.of(reversed).toString());
+	}
+
+	@Test
+	void namesAreInterned() {
+		ParameterMap first = ParameterMap.of(Map.of(new String("name"), "first"));
+		ParameterMap second = ParameterMap.of(Map.of(new String("name"), "second"));
+		assertSame(first.keySet().iterator().next(), second.keySet().iterator().next());
+	}
+}
@@ -167,4 +167,54 @@ class ParameterParserTest {
 		assertNull(testObject.checkSanity("* * * * *%percent=10%;name=value", mockParametersDefinitionProperty));
 	}
 
+	@Test
+	void test_escapedSeparators() {
+		ParameterParser testObject = new ParameterParser();
+		HashMap<String, String> expected = new HashMap<>();
+		expected.put("a;b", "x=y;z");
+		expected.put("path", "C:\\temp");
+		assertEquals(expected, testObject.parse("a\\;b=x=y\\;z;path=C:\\temp"));
+	}
+
+	@Test
+	void test_backslashBeforeEqualsIsLiteral() {
+		// as written before escapes existed, the value must not change on upgrade
+		ParameterParser testObject = new ParameterParser();
+		assertEquals(Collections.singletonMap("filter", "a\\=b"), testObject.parse("filter=a\\=b"));
+	}
+
+	@Test
+	void test_otherBackslashesAreLiteral() {
+		ParameterParser testObject = new ParameterParser();
+		HashMap<String, String> expected = new HashMap<>();
+		expected.put("path", "\\\\server\\share");
+		expected.put("pct", "10\\%");
+		assertEquals(expected, testObject.parse("path=\\\\server\\share;pct=10\\%"));
+	}
+
+	@Test
+	void test_orderIsKept() {
+		ParameterParser testObject = new ParameterParser();
+		assertEquals(Arrays.asList("b", "a", "c"), new ArrayList<>(testObject.parse("b=1;a=2;c=3").keySet()));
+	}
+
+	@Test
+	void diagnose_reportsEveryProblemWithItsPosition() {
+		ParameterParser testObject = new ParameterParser();
+		when(mockParametersDefinitionProperty.getParameterDefinitionNames()).thenReturn(Arrays.asList("name", "other"));
+		List<ParameterParser.Diagnostic> diagnostics = testObject.diagnose(
+				"# comment %nothing=checked\n* * * * *%name=value;name=again\n\nH * * * *%other=x;;\nH H * * *%name=;unknown=y", mockParametersDefinitionProperty, false);
+		assertEquals(4, diagnostics.size());
+		assertEquals(2, diagnostics.get(0).getLine());
+		assertEquals(22, diagnostics.get(0).getColumn());
+		assertTrue(diagnostics.get(0).getMessage().startsWith("Duplicate key"));
+		assertEquals(4, diagnostics.get(1).getLine());
+		assertEquals(19, diagnostics.get(1).getColumn());
+		assertEquals(5, diagnostics.get(2).getLine());
+		assertEquals(17, diagnostics.get(2).getColumn());
+		assertEquals(Messages.ParameterizedTimerTrigger_UndefinedParameter("[unknown]", "[name, other]"), diagnostics.get(2).getMessage());
+		assertEquals(5, diagnostics.get(3).getLine());
+		assertEquals(11, diagnostics.get(3).getColumn());
+		assertEquals(Messages.ParameterizedTimerTrigger_EmptyParameter("[name]"), diagnostics.get(3).getMessage());
+	}
 }
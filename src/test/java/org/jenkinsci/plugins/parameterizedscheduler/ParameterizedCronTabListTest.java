@@ -147,6 +147,20 @@ class ParameterizedCronTabListTest {
 		assertEquals(expected, actualCronTabs.get(0).getParameterValues());
 	}
 
+	@Test
+	void check_usesTimezoneOfEachLine() {
+		// 2024-01-01T09:30Z, 15:00 in Kolkata
+		long minute = 28401690L;
+		ParameterizedCronTab utc = ParameterizedCronTab.create("30 9 * * *", 1, null, "UTC");
+		ParameterizedCronTab kolkata = ParameterizedCronTab.create("0 15 * * *", 2, null, "Asia/Kolkata");
+		ParameterizedCronTabList testObject = new ParameterizedCronTabList(Arrays.asList(utc, kolkata));
+
+		assertEquals(Arrays.asList(utc, kolkata), testObject.check(minute));
+		GregorianCalendar calendar = new GregorianCalendar();
+		calendar.setTimeInMillis(minute * 60000);
+		assertEquals(testObject.check(calendar), testObject.check(minute));
+	}
+
 	@Test
 	void create_with_invalidTimezone() {
 		assertThrows(IllegalArgumentException.class, () ->
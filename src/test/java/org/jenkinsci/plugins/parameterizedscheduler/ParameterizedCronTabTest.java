@@ -13,6 +13,7 @@ import hudson.scheduler.Hash;
 
 import com.google.common.collect.Maps;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class ParameterizedCronTabTest {
@@ -62,4 +63,14 @@ class ParameterizedCronTabTest {
 		assertEquals(parameters, parameterizedCronTab.getParameterValues());
 	}
 
+
+	@Test
+	void firePolicy() {
+		assertEquals(FirePolicy.ALWAYS, ParameterizedCronTab.create("* * * * * %one=onevalue", 1, null, null).getFirePolicy());
+		ParameterizedCronTab testObject = ParameterizedCronTab.create("[skip-if-running] * * * * * %one=onevalue", 1, null, null);
+		assertEquals(FirePolicy.SKIP_IF_RUNNING, testObject.getFirePolicy());
+		assertEquals(Map.of("one", "onevalue"), testObject.getParameterValues());
+		assertEquals(FirePolicy.COALESCE, ParameterizedCronTab.create("[ coalesce ]H * * * *", 1, null, null).getFirePolicy());
+		assertThrows(IllegalArgumentException.class, () -> ParameterizedCronTab.create("[sometimes] * * * * *", 1, null, null));
+	}
 }
@@ -9,6 +9,7 @@ import hudson.model.ParameterValue;
 import hudson.model.ParametersAction;
 import hudson.model.ParametersDefinitionProperty;
 import hudson.model.StringParameterDefinition;
+import hudson.model.StringParameterValue;
 import hudson.triggers.Trigger;
 import net.sf.json.JSONObject;
 import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
@@ -22,6 +23,7 @@ import org.kohsuke.stapler.StaplerRequest2;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
@@ -52,6 +54,31 @@ class ParameterizedSchedulerTest {
         assertThat(values, containsInAnyOrder("bar", "boo"));
     }
 
+	@Test
+	void parallel(JenkinsRule r) throws Exception {
+        Cron.PARALLELISM = 4;
+        try {
+            List<FreeStyleProject> projects = new ArrayList<>();
+            for (int i = 0; i < 3; ++i) {
+                FreeStyleProject p = r.createFreeStyleProject();
+                p.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("foo", "lol")));
+                Trigger<Job> t = new ParameterizedTimerTrigger("* * * * *%foo=bar" + i);
+                t.start(p, true);
+                p.addTrigger(t);
+                projects.add(p);
+            }
+            new Cron().doRun();
+            r.waitUntilNoActivity();
+            for (int i = 0; i < 3; ++i) {
+                FreeStyleProject p = projects.get(i);
+                assertThat(p.getLastCompletedBuild(), is(notNullValue()));
+                assertThat((String) p.getLastCompletedBuild().getAction(ParametersAction.class).getParameter("foo").getValue(), is("bar" + i));
+            }
+        } finally {
+            Cron.PARALLELISM = 0;
+        }
+    }
+
 	@Test
 	void pipeline(JenkinsRule r) throws Exception {
         WorkflowJob p = r.createProject(WorkflowJob.class);
@@ -141,6 +168,53 @@ class ParameterizedSchedulerTest {
         assertThat(p.getLastCompletedBuild(), is(notNullValue()));
     }
 
+	@Test
+	void parametersAreResolvedOncePerConfiguration(JenkinsRule r) throws Exception {
+        FreeStyleProject p = r.createFreeStyleProject();
+        p.addProperty(new ParametersDefinitionProperty(new CountingParameterDefinition("foo"), new StringParameterDefinition("bar", "lol")));
+        ParameterizedTimerTrigger t = new ParameterizedTimerTrigger("* * * * *%bar=baz");
+        t.start(p, true);
+        p.addTrigger(t);
+        CountingParameterDefinition.count.set(0);
+
+        // definitions not known to be static are resolved on every fire
+        t.run(t.getCronTabList().getCronTabs(), FireDispatcher.get().newBatch());
+        t.run(t.getCronTabList().getCronTabs(), FireDispatcher.get().newBatch());
+        assertThat(CountingParameterDefinition.count.get(), is(2));
+
+        String staticTypes = ParameterizedTimerTrigger.STATIC_TYPES;
+        ParameterizedTimerTrigger.STATIC_TYPES = CountingParameterDefinition.class.getName();
+        try {
+            t.clearResolvedParameters();
+            for (int i = 0; i < 3; ++i) {
+                t.run(t.getCronTabList().getCronTabs(), FireDispatcher.get().newBatch());
+            }
+            assertThat(CountingParameterDefinition.count.get(), is(3));
+
+            // a new configuration is resolved anew
+            p.removeProperty(ParametersDefinitionProperty.class);
+            p.addProperty(new ParametersDefinitionProperty(new CountingParameterDefinition("foo"), new StringParameterDefinition("bar", "lol")));
+            t.run(t.getCronTabList().getCronTabs(), FireDispatcher.get().newBatch());
+            assertThat(CountingParameterDefinition.count.get(), is(4));
+        } finally {
+            ParameterizedTimerTrigger.STATIC_TYPES = staticTypes;
+        }
+    }
+
+    private static class CountingParameterDefinition extends StringParameterDefinition {
+        static final AtomicInteger count = new AtomicInteger();
+
+        CountingParameterDefinition(@NonNull String name) {
+            super(name, "lol");
+        }
+
+        @Override
+        public StringParameterValue getDefaultParameterValue() {
+            count.incrementAndGet();
+            return super.getDefaultParameterValue();
+        }
+    }
+
     private static class NullParameterDefinition extends ParameterDefinition {
 
         public NullParameterDefinition(@NonNull String name) {
@@ -1,8 +1,18 @@
 package org.jenkinsci.plugins.parameterizedscheduler;
 
+import hudson.model.BooleanParameterDefinition;
+import hudson.model.BooleanParameterValue;
+import hudson.model.ChoiceParameterDefinition;
+import hudson.model.ParameterValue;
+import hudson.model.StringParameterDefinition;
+import hudson.model.StringParameterValue;
+import hudson.scheduler.Hash;
 import org.junit.jupiter.api.Test;
+import org.kohsuke.stapler.StaplerRequest2;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class ParameterizedTimerTriggerTest {
 
@@ -13,4 +23,48 @@ class ParameterizedTimerTriggerTest {
 
 		assertSame(parameterizedSpecification, testObject.getParameterizedSpecification());
 	}
+
+	@Test
+	void quietPeriodIsSpreadByJobName() {
+		assertEquals(0, ParameterizedTimerTrigger.quietPeriod("job"));
+		int spread = ParameterizedTimerTrigger.SPREAD;
+		ParameterizedTimerTrigger.SPREAD = 60;
+		try {
+			boolean spreadOut = false;
+			boolean independentOfH = false;
+			for (int i = 0; i < 20; i++) {
+				int quietPeriod = ParameterizedTimerTrigger.quietPeriod("job" + i);
+				assertTrue(quietPeriod >= 0 && quietPeriod < 60);
+				assertEquals(quietPeriod, ParameterizedTimerTrigger.quietPeriod("job" + i));
+				spreadOut |= quietPeriod != ParameterizedTimerTrigger.quietPeriod("job0");
+				// the minute a leading H gets for the same job
+				independentOfH |= quietPeriod != Hash.from("job" + i).next(60);
+			}
+			assertTrue(spreadOut);
+			assertTrue(independentOfH);
+		} finally {
+			ParameterizedTimerTrigger.SPREAD = spread;
+		}
+	}
+
+	@Test
+	void simpleParametersTakeTheTextDirectly() {
+		assertEquals(new StringParameterValue("foo", "bar"),
+				ParameterizedTimerTrigger.createValue(new StringParameterDefinition("foo", "lol"), "bar"));
+		assertEquals(new BooleanParameterValue("flag", true),
+				ParameterizedTimerTrigger.createValue(new BooleanParameterDefinition("flag", false, null), "true"));
+		assertEquals(new StringParameterValue("choice", "b"),
+				ParameterizedTimerTrigger.createValue(new ChoiceParameterDefinition("choice", new String[] {"a", "b"}, null), "b"));
+	}
+
+	@Test
+	void customBindingGoesThroughTheRequest() {
+		StringParameterDefinition definition = new StringParameterDefinition("foo", "lol") {
+			@Override
+			public ParameterValue createValue(StaplerRequest2 req) {
+				return new StringParameterValue(getName(), "request:" + req.getParameter(getName()));
+			}
+		};
+		assertEquals(new StringParameterValue("foo", "request:bar"), ParameterizedTimerTrigger.createValue(definition, "bar"));
+	}
 }
@@ -0,0 +1,163 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.StringParameterDefinition;
+import jenkins.model.Jenkins;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockFolder;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+@WithJenkins
+class ParameterizedTriggerRegistryTest {
+
+	@Test
+	void startAndStop(JenkinsRule r) throws Exception {
+		FreeStyleProject p = r.createFreeStyleProject();
+		p.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("foo", "lol")));
+		ParameterizedTimerTrigger t = new ParameterizedTimerTrigger("0 0 * * *%foo=bar");
+		t.start(p, true);
+		p.addTrigger(t);
+		assertThat(ParameterizedTriggerRegistry.get().getTriggers(), hasItem(t));
+
+		t.stop();
+		assertThat(ParameterizedTriggerRegistry.get().getTriggers(), not(hasItem(t)));
+	}
+
+	@Test
+	void unparsableSpecification(JenkinsRule r) throws Exception {
+		FreeStyleProject p = r.createFreeStyleProject();
+		// as loaded from a configuration saved before the syntax got stricter
+		ParameterizedTimerTrigger t = (ParameterizedTimerTrigger) Jenkins.XSTREAM2.fromXML(
+				"<" + ParameterizedTimerTrigger.class.getName() + "><spec></spec>"
+				+ "<parameterizedSpecification>not a schedule</parameterizedSpecification>"
+				+ "</" + ParameterizedTimerTrigger.class.getName() + ">");
+		t.start(p, true);
+		assertThat(t.getCronTabList(), is(nullValue()));
+		assertThat(ParameterizedTriggerRegistry.get().getTriggers(), not(hasItem(t)));
+	}
+
+	@Test
+	void deletedJob(JenkinsRule r) throws Exception {
+		FreeStyleProject p = r.createFreeStyleProject();
+		p.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("foo", "lol")));
+		ParameterizedTimerTrigger t = new ParameterizedTimerTrigger("0 0 * * *%foo=bar");
+		t.start(p, true);
+		p.addTrigger(t);
+
+		p.delete();
+		assertThat(ParameterizedTriggerRegistry.get().getTriggers(), not(hasItem(t)));
+	}
+
+	@Test
+	void deletedFolder(JenkinsRule r) throws Exception {
+		MockFolder folder = r.createFolder("folder");
+		FreeStyleProject nested = folder.createProject(FreeStyleProject.class, "nested");
+		ParameterizedTimerTrigger t = new ParameterizedTimerTrigger("0 0 * * *");
+		t.start(nested, true);
+		nested.addTrigger(t);
+		FreeStyleProject sibling = r.createFreeStyleProject("folder2");
+		ParameterizedTimerTrigger other = new ParameterizedTimerTrigger("0 0 * * *");
+		other.start(sibling, true);
+		sibling.addTrigger(other);
+
+		folder.delete();
+		assertThat(ParameterizedTriggerRegistry.get().getTriggers(), not(hasItem(t)));
+		assertThat(ParameterizedTriggerRegistry.get().getTriggers(), hasItem(other));
+	}
+
+	@Test
+	void replacedTrigger(JenkinsRule r) throws Exception {
+		FreeStyleProject p = r.createFreeStyleProject();
+		p.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("foo", "lol")));
+		ParameterizedTimerTrigger t = new ParameterizedTimerTrigger("0 0 * * *%foo=bar");
+		t.start(p, true);
+		p.addTrigger(t);
+		assertThat(ParameterizedTriggerRegistry.isCurrent(t), is(true));
+
+		ParameterizedTimerTrigger replacement = new ParameterizedTimerTrigger("0 1 * * *%foo=bar");
+		replacement.start(p, true);
+		p.addTrigger(replacement);
+		assertThat(ParameterizedTriggerRegistry.isCurrent(t), is(false));
+
+		ParameterizedTriggerRegistry.get().refresh(p);
+		assertThat(ParameterizedTriggerRegistry.get().getTriggers(), not(hasItem(t)));
+		assertThat(ParameterizedTriggerRegistry.get().getTriggers(), hasItem(replacement));
+	}
+
+	@Test
+	void replacementTakesOverUnchangedLines(JenkinsRule r) throws Exception {
+		FreeStyleProject p = r.createFreeStyleProject();
+		p.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("foo", "lol")));
+		ParameterizedTimerTrigger t = new ParameterizedTimerTrigger("H H * * *%foo=bar\n0 1 * * *%foo=baz");
+		t.start(p, true);
+		p.addTrigger(t);
+		// the way a Pipeline redefines its triggers on every build
+		t.stop();
+		ParameterizedTimerTrigger replacement = new ParameterizedTimerTrigger("H H * * *%foo=bar\n0 2 * * *%foo=baz");
+		replacement.start(p, true);
+		p.addTrigger(replacement);
+
+		assertThat(replacement.getCronTabList().getCronTabs().get(0), is(sameInstance(t.getCronTabList().getCronTabs().get(0))));
+		assertThat(replacement.getCronTabList().getCronTabs().get(1), is(not(sameInstance(t.getCronTabList().getCronTabs().get(1)))));
+		assertThat(ParameterizedTriggerRegistry.get().getTriggers(), hasItem(replacement));
+	}
+
+	@Test
+	void supersededTriggerIsForgotten(JenkinsRule r) throws Exception {
+		FreeStyleProject p = r.createFreeStyleProject();
+		p.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("foo", "lol")));
+		ParameterizedTimerTrigger t = new ParameterizedTimerTrigger("0 0 * * *%foo=bar");
+		t.start(p, true);
+		p.addTrigger(t);
+		t.stop();
+		ParameterizedTimerTrigger replacement = new ParameterizedTimerTrigger("0 1 * * *%foo=bar");
+		replacement.start(p, true);
+		p.addTrigger(replacement);
+		ParameterizedTimerTrigger other = new ParameterizedTimerTrigger("0 2 * * *%foo=bar");
+		assertThat(ParameterizedTriggerRegistry.get().predecessor(p, other), is(sameInstance(replacement)));
+
+		// the schedule is removed from the job
+		replacement.stop();
+		p.removeTrigger(replacement.getDescriptor());
+		ParameterizedTriggerRegistry.get().refresh(p);
+		assertThat(ParameterizedTriggerRegistry.get().predecessor(p, other), is(nullValue()));
+	}
+
+	@Test
+	void restartDuringTicks(JenkinsRule r) throws Exception {
+		FreeStyleProject p = r.createFreeStyleProject();
+		p.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("foo", "lol")));
+		ParameterizedTimerTrigger t = new ParameterizedTimerTrigger("H H * * *%foo=bar\n0 1 * * *%foo=baz");
+		t.start(p, true);
+		p.addTrigger(t);
+		AtomicBoolean done = new AtomicBoolean();
+		Thread restarter = new Thread(() -> {
+			while (!done.get()) {
+				t.clearResolvedParameters();
+				t.start(p, false);
+			}
+		});
+		restarter.start();
+		try {
+			for (int i = 0; i < 1000; i++) {
+				assertThat(t.getJob(), is(sameInstance(p)));
+				assertThat(t.getCronTabList().getCronTabs().size(), is(2));
+				t.run(t.getCronTabList().getCronTabs(), FireDispatcher.get().newBatch());
+			}
+		} finally {
+			done.set(true);
+			restarter.join();
+		}
+	}
+}
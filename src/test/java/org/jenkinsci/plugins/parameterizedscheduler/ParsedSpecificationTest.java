@@ -0,0 +1,114 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import hudson.scheduler.Hash;
+import org.junit.jupiter.api.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ParsedSpecificationTest {
+
+	@Test
+	void unchangedSpecificationIsParsedOnce() {
+		String specification = "TZ=Europe/Paris\n0 2 * * * %foo=bar\nH H * * * %foo=baz";
+		assertSame(ParsedSpecification.of(specification), ParsedSpecification.of(specification));
+		assertSame(ParameterizedCronTabList.create(specification), ParameterizedCronTabList.create(specification));
+	}
+
+	@Test
+	void onlyHashedLinesAreResolvedAgain() {
+		ParsedSpecification testObject = ParsedSpecification.of("0 2 * * * %foo=bar\nH H * * * %foo=baz\n@daily");
+		List<ParameterizedCronTab> unhashed = testObject.resolve(null).getCronTabs();
+		List<ParameterizedCronTab> hashed = testObject.resolve(Hash.from("job")).getCronTabs();
+		assertSame(unhashed.get(0), hashed.get(0));
+		assertNotSame(unhashed.get(1), hashed.get(1));
+		assertNotSame(unhashed.get(2), hashed.get(2));
+		assertEquals("baz", hashed.get(1).getParameterValues().get("foo"));
+	}
+
+	@Test
+	void hashedLinesMatchAFreshParse() {
+		String specification = "H H(0-7) * * * %foo=baz\nH/15 * * * *";
+		Hash hash = Hash.from("folder/job");
+		List<ParameterizedCronTab> resolved = ParsedSpecification.of(specification).resolve(hash).getCronTabs();
+		String[] lines = specification.split("\n");
+		Calendar calendar = new GregorianCalendar(2024, Calendar.MARCH, 1, 0, 0);
+		// lines draw from the same hash in turn
+		Hash freshHash = Hash.from("folder/job");
+		for (int i = 0; i < lines.length; i++) {
+			ParameterizedCronTab fresh = ParameterizedCronTab.create(lines[i], i + 1, freshHash, null);
+			assertEquals(fresh.ceil(calendar.getTimeInMillis() / 60000), resolved.get(i).ceil(calendar.getTimeInMillis() / 60000));
+		}
+	}
+
+	@Test
+	void editedSpecificationKeepsUnchangedLines() {
+		ParsedSpecification previous = ParsedSpecification.of("0 2 * * * %foo=bar\nH H * * * %foo=baz\nH 3 * * *\n5 * * * *");
+		ParameterizedCronTabList resolved = previous.resolve(Hash.from("job"));
+		List<ParameterizedCronTab> tabs = resolved.getCronTabs();
+		assertSame(resolved, previous.resolve(Hash.from("job"), previous, resolved));
+
+		ParsedSpecification lastLineEdited = ParsedSpecification.of("0 2 * * * %foo=bar\nH H * * * %foo=baz\nH 3 * * *\n6 * * * *");
+		List<ParameterizedCronTab> updated = lastLineEdited.resolve(Hash.from("job"), previous, resolved).getCronTabs();
+		assertSame(tabs.get(0), updated.get(0));
+		assertSame(tabs.get(1), updated.get(1));
+		assertSame(tabs.get(2), updated.get(2));
+		assertNotSame(tabs.get(3), updated.get(3));
+
+		ParsedSpecification hashedLineEdited = ParsedSpecification.of("0 2 * * * %foo=bar\nH H * * * %foo=qux\nH 3 * * *\n5 * * * *");
+		updated = hashedLineEdited.resolve(Hash.from("job"), previous, resolved).getCronTabs();
+		assertSame(tabs.get(0), updated.get(0));
+		assertEquals("qux", updated.get(1).getParameterValues().get("foo"));
+		// the H lines after a changed one draw from the hash anew
+		assertNotSame(tabs.get(2), updated.get(2));
+		assertSame(tabs.get(3), updated.get(3));
+	}
+
+	@Test
+	void editedSpecificationMatchesAFullResolve() {
+		String before = "H H * * * %foo=bar\n0 2 * * *\nH 3 * * * %foo=baz\nH/15 * * * *\n@daily";
+		ParsedSpecification previous = ParsedSpecification.of(before);
+		ParameterizedCronTabList resolved = previous.resolve(Hash.from("folder/job"));
+		long start = new GregorianCalendar(2024, Calendar.MARCH, 1, 0, 0).getTimeInMillis() / 60000;
+		for (String after : List.of(
+				"H H * * * %foo=bar\n0 2 * * *\nH 4 * * * %foo=baz\nH/15 * * * *\n@daily",
+				"H H * * * %foo=bar\n0 3 * * *\nH 3 * * * %foo=baz\nH/20 * * * *\n@daily",
+				"H H * * * %foo=qux\n0 2 * * *\nH 3 * * * %foo=baz\nH/15 * * * *\n@daily",
+				"H H * * * %foo=bar\n0 2 * * *\nH 3 * * * %foo=baz\nH/15 * * * *\n@weekly")) {
+			List<ParameterizedCronTab> incremental = ParsedSpecification.of(after)
+					.resolve(Hash.from("folder/job"), previous, resolved).getCronTabs();
+			List<ParameterizedCronTab> full = ParameterizedCronTabList.create(after, Hash.from("folder/job")).getCronTabs();
+			assertEquals(full.size(), incremental.size());
+			for (int i = 0; i < full.size(); i++) {
+				assertEquals(full.get(i).getParameterValues(), incremental.get(i).getParameterValues(), after);
+				// a week of fire times tells the spread values apart
+				long minute = start;
+				for (int n = 0; n < 20; n++) {
+					minute = full.get(i).ceil(minute);
+					assertEquals(minute, incremental.get(i).ceil(minute), after);
+					minute++;
+				}
+			}
+		}
+	}
+
+	@Test
+	void editedLinesAreParsedAlone() {
+		ParsedSpecification previous = ParsedSpecification.of("0 2 * * * %foo=bar\n0 3 * * * %foo=baz");
+		ParsedSpecification edited = ParsedSpecification.of("0 2 * * * %foo=bar\n0 4 * * * %foo=baz");
+		assertSame(previous.resolve(null).getCronTabs().get(0), edited.resolve(null).getCronTabs().get(0));
+		assertNotSame(previous.resolve(null).getCronTabs().get(1), edited.resolve(null).getCronTabs().get(1));
+	}
+
+	@Test
+	void invalidSpecification() {
+		assertThrows(IllegalArgumentException.class, () -> ParsedSpecification.of("* * * *"));
+		assertThrows(IllegalArgumentException.class, () -> ParsedSpecification.of("[often] * * * * *"));
+	}
+}
@@ -0,0 +1,77 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.StringParameterDefinition;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+@WithJenkins
+class ScheduleCacheTest {
+
+	private static final String SPECIFICATION = "TZ=Europe/Paris\nH H * * 1-5 %foo=bar\n[coalesce] 0 2 * * * %foo=baz\n* * * * *";
+
+	@Test
+	void unchangedScheduleIsRestored(JenkinsRule r) throws Exception {
+		FreeStyleProject p = r.createFreeStyleProject();
+		p.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("foo", "lol")));
+		ParameterizedTimerTrigger t = new ParameterizedTimerTrigger(SPECIFICATION);
+		t.start(p, true);
+		p.addTrigger(t);
+		ScheduleCache cache = new ScheduleCache();
+		cache.markDirty();
+		cache.save(Collections.singletonList(t));
+
+		ScheduleCache restarted = new ScheduleCache();
+		ParameterizedCronTabList restored = restarted.lookup(p.getFullName(), SPECIFICATION);
+		assertThat(restored, is(notNullValue()));
+		assertThat(restarted.getHits(), is(1L));
+		List<ParameterizedCronTab> expected = t.getCronTabList().getCronTabs();
+		List<ParameterizedCronTab> actual = restored.getCronTabs();
+		assertThat(actual.size(), is(expected.size()));
+		long minute = ParameterizedTriggerRegistry.currentMinute();
+		for (int i = 0; i < expected.size(); i++) {
+			assertThat(actual.get(i).ceil(minute), is(expected.get(i).ceil(minute)));
+			assertThat(actual.get(i).getCompiled(), is(sameInstance(expected.get(i).getCompiled())));
+			assertThat(actual.get(i).checkSanity(), is(expected.get(i).checkSanity()));
+			assertThat(actual.get(i).getParameterValues(), is(expected.get(i).getParameterValues()));
+			assertThat(actual.get(i).getFirePolicy(), is(expected.get(i).getFirePolicy()));
+			assertThat(actual.get(i).getLineKey(), is(expected.get(i).getLineKey()));
+		}
+		assertThat(restored.getTimezone(), is("Europe/Paris"));
+	}
+
+	@Test
+	void staleOrCorruptEntriesAreParsed(JenkinsRule r) throws Exception {
+		FreeStyleProject p = r.createFreeStyleProject();
+		ParameterizedTimerTrigger t = new ParameterizedTimerTrigger(SPECIFICATION);
+		t.start(p, true);
+		ScheduleCache cache = new ScheduleCache();
+		cache.markDirty();
+		cache.save(Collections.singletonList(t));
+
+		ScheduleCache restarted = new ScheduleCache();
+		assertThat(restarted.lookup(p.getFullName(), SPECIFICATION + "\n0 3 * * *"), is(nullValue()));
+		assertThat(restarted.lookup("other", SPECIFICATION), is(nullValue()));
+		assertThat(restarted.getMisses(), is(2L));
+
+		byte[] bytes = Files.readAllBytes(cache.getFile().toPath());
+		Files.write(cache.getFile().toPath(), Arrays.copyOf(bytes, bytes.length - 10));
+		assertThat(new ScheduleCache().lookup(p.getFullName(), SPECIFICATION), is(nullValue()));
+		Files.write(cache.getFile().toPath(), "garbage".getBytes(StandardCharsets.UTF_8));
+		assertThat(new ScheduleCache().lookup(p.getFullName(), SPECIFICATION), is(nullValue()));
+	}
+}
@@ -0,0 +1,54 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.StringParameterDefinition;
+import hudson.util.FormValidation;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpecificationValidatorTest {
+
+	private final ParametersDefinitionProperty property = new ParametersDefinitionProperty(new StringParameterDefinition("name", "value"));
+
+	@Test
+	void valid() {
+		SpecificationValidator testObject = new SpecificationValidator();
+		assertEquals(FormValidation.Kind.OK, testObject.validate("# comment\nTZ=Europe/Paris\nH * * * * %name=a\n\nH H * * *", property).kind);
+	}
+
+	@Test
+	void everyProblemIsReported() {
+		SpecificationValidator testObject = new SpecificationValidator();
+		FormValidation validation = testObject.validate("H * * * * %name=a;name=b\nH * * * * %other=x\nnot cron\n* * * * *", property);
+		assertEquals(FormValidation.Kind.ERROR, validation.kind);
+		String message = validation.renderHtml();
+		assertTrue(message.contains("Line 1, column 19"), message);
+		assertTrue(message.contains("Line 2, column 12"), message);
+		assertTrue(message.contains("Line 3:"), message);
+		assertTrue(message.contains("Line 4:"), message);
+	}
+
+	@Test
+	void badScheduleAndBadParametersOnOneLine() {
+		SpecificationValidator testObject = new SpecificationValidator();
+		FormValidation validation = testObject.validate("not cron %name=a;name=b", property);
+		assertEquals(FormValidation.Kind.ERROR, validation.kind);
+		String message = validation.renderHtml();
+		assertTrue(message.contains("Line 1:"), message);
+		assertTrue(message.contains("Line 1, column 18"), message);
+	}
+
+	@Test
+	void onlyChangedLinesAreValidated() {
+		SpecificationValidator testObject = new SpecificationValidator();
+		testObject.validate("H * * * * %name=a\nH H * * * %name=b", property);
+		assertEquals(2, testObject.getValidatedLines());
+		testObject.validate("H * * * * %name=a\nH H * * * %name=c", property);
+		assertEquals(3, testObject.getValidatedLines());
+		// other parameter definitions invalidate
+		testObject.validate("H * * * * %name=a\nH H * * * %name=c", new ParametersDefinitionProperty(new StringParameterDefinition("other", "value")));
+		assertEquals(5, testObject.getValidatedLines());
+	}
+}
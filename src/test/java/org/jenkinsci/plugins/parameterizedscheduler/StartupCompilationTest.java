@@ -0,0 +1,96 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Job;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.StringParameterDefinition;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+@WithJenkins
+class StartupCompilationTest {
+
+	@Test
+	void startsInlineOnceJenkinsIsUp(JenkinsRule r) throws Exception {
+		FreeStyleProject p = r.createFreeStyleProject();
+		p.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("foo", "lol")));
+		ParameterizedTimerTrigger t = new ParameterizedTimerTrigger("H H * * *%foo=bar");
+		t.start(p, true);
+		assertThat(t.getJob(), is(sameInstance(p)));
+		assertThat(ParameterizedTriggerRegistry.get().getTriggers(), hasItem(t));
+	}
+
+	@Test
+	void compiledInBackground(JenkinsRule r) throws Exception {
+		FreeStyleProject p = r.createFreeStyleProject("slow");
+		p.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("foo", "lol")));
+		ParameterizedTimerTrigger t = new ParameterizedTimerTrigger("H H * * *%foo=bar\n0 1 * * *%foo=baz");
+		p.addTrigger(t);
+		StartupCompilation compilation = StartupCompilation.get();
+		compilation.submit(t, p);
+		// what the tick does before polling
+		compilation.awaitPending();
+		assertThat(t.getJob(), is(sameInstance(p)));
+		assertThat(ParameterizedTriggerRegistry.get().getTriggers(), hasItem(t));
+
+		String report = compilation.finish();
+		assertThat(report, containsString("Compiled 1 parameterized schedules"));
+		assertThat(report, containsString("slow ("));
+		assertThat(compilation.getReport(), is(report));
+		assertThat(compilation.finish(), is(nullValue()));
+	}
+
+	@Test
+	void tickGivesUpOnSlowCompilation(JenkinsRule r) throws Exception {
+		FreeStyleProject p = r.createFreeStyleProject("pathological");
+		p.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("foo", "lol")));
+		CountDownLatch release = new CountDownLatch(1);
+		ParameterizedTimerTrigger t = new ParameterizedTimerTrigger("H H * * *%foo=bar") {
+			@Override
+			void compile(Job project) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				super.compile(project);
+			}
+		};
+		StartupCompilation compilation = StartupCompilation.get();
+		compilation.submit(t, p);
+		assertThat(compilation.awaitPending(100), is(false));
+		assertThat(ParameterizedTriggerRegistry.get().getTriggers(), not(hasItem(t)));
+
+		release.countDown();
+		assertThat(compilation.awaitPending(TimeUnit.SECONDS.toMillis(10)), is(true));
+		assertThat(ParameterizedTriggerRegistry.get().getTriggers(), hasItem(t));
+		compilation.finish();
+	}
+
+	@Test
+	void stoppedWhilePendingIsNotRegistered(JenkinsRule r) throws Exception {
+		FreeStyleProject p = r.createFreeStyleProject();
+		p.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("foo", "lol")));
+		ParameterizedTimerTrigger t = new ParameterizedTimerTrigger("H H * * *%foo=bar");
+		t.start(p, true);
+		t.stop();
+		// the compilation only gets a thread after the trigger was stopped
+		StartupCompilation compilation = StartupCompilation.get();
+		compilation.submit(t, p);
+		compilation.awaitPending();
+		assertThat(ParameterizedTriggerRegistry.get().getTriggers(), not(hasItem(t)));
+		compilation.finish();
+	}
+}
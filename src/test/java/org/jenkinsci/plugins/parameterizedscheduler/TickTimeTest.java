@@ -0,0 +1,91 @@
+package org.jenkinsci.plugins.parameterizedscheduler;
+
+import hudson.scheduler.CronTab;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TickTimeTest {
+
+	// 2024-03-31T01:00Z, Europe/Paris goes from 02:00 to 03:00
+	private static final long PARIS_FORWARD = minute("2024-03-31T01:00:00Z");
+	// 2024-10-27T01:00Z, Europe/Paris goes from 03:00 back to 02:00
+	private static final long PARIS_BACK = minute("2024-10-27T01:00:00Z");
+	// 2024-10-05T15:30Z, Australia/Lord_Howe goes from 02:00 to 02:30
+	private static final long LORD_HOWE_FORWARD = minute("2024-10-05T15:30:00Z");
+
+	@Test
+	void fieldsMatchTheCalendarAroundTransitions() {
+		for (String timezone : new String[] {"Europe/Paris", "America/New_York", "Australia/Lord_Howe", "Asia/Kolkata", "UTC"}) {
+			for (long start : new long[] {PARIS_FORWARD, PARIS_BACK, LORD_HOWE_FORWARD}) {
+				Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone(timezone));
+				for (long minute = start - 180; minute < start + 180; minute++) {
+					calendar.setTimeInMillis(TimeUnit.MINUTES.toMillis(minute));
+					CronFields fields = new TickTime(minute).fields(timezone);
+					String at = timezone + " at " + calendar.getTime();
+					assertEquals(calendar.get(Calendar.MINUTE), fields.minute, at);
+					assertEquals(calendar.get(Calendar.HOUR_OF_DAY), fields.hour, at);
+					assertEquals(calendar.get(Calendar.DAY_OF_MONTH), fields.dayOfMonth, at);
+					assertEquals(calendar.get(Calendar.MONTH) + 1, fields.month, at);
+					assertEquals(calendar.get(Calendar.DAY_OF_WEEK) - 1, fields.dayOfWeek, at);
+				}
+			}
+		}
+	}
+
+	@Test
+	void skippedLocalMinuteNeverFires() {
+		ParameterizedCronTab line = ParameterizedCronTab.create("30 2 * * *", 1, null, "Europe/Paris");
+		int fires = 0;
+		for (long minute = PARIS_FORWARD - 180; minute < PARIS_FORWARD + 180; minute++) {
+			fires += line.check(new TickTime(minute)) ? 1 : 0;
+		}
+		assertEquals(0, fires);
+	}
+
+	@Test
+	void repeatedLocalMinuteFiresTwiceLikeCronTab() {
+		ParameterizedCronTab line = ParameterizedCronTab.create("30 2 * * *", 1, null, "Europe/Paris");
+		CronTab cronTab = new CronTab("30 2 * * *", 1, null, "Europe/Paris");
+		Calendar calendar = Calendar.getInstance();
+		int fires = 0;
+		for (long minute = PARIS_BACK - 180; minute < PARIS_BACK + 180; minute++) {
+			calendar.setTimeInMillis(TimeUnit.MINUTES.toMillis(minute));
+			boolean fired = line.check(new TickTime(minute));
+			assertEquals(cronTab.check(calendar), fired, "at " + calendar.getTime());
+			fires += fired ? 1 : 0;
+		}
+		assertEquals(2, fires);
+	}
+
+	@Test
+	void halfHourTransition() {
+		ParameterizedCronTab line = ParameterizedCronTab.create("15 2 * * *", 1, null, "Australia/Lord_Howe");
+		for (long minute = LORD_HOWE_FORWARD - 60; minute < LORD_HOWE_FORWARD + 60; minute++) {
+			assertFalse(line.check(new TickTime(minute)));
+		}
+		assertTrue(ParameterizedCronTab.create("45 2 * * *", 1, null, "Australia/Lord_Howe").check(new TickTime(LORD_HOWE_FORWARD + 15)));
+	}
+
+	@Test
+	void zonesAreConvertedOncePerTick() {
+		TickTime tick = new TickTime(PARIS_BACK);
+		assertSame(tick.fields("Europe/Paris"), tick.fields("Europe/Paris"));
+		assertSame(tick.fields(null), tick.fields(null));
+		ParameterizedCronTabList paris = ParameterizedCronTabList.create("TZ=Europe/Paris\n0 3 * * *\n0 2 * * *");
+		assertEquals(1, paris.check(tick).size());
+		assertEquals(paris.check(PARIS_BACK), paris.check(tick));
+	}
+
+	private static long minute(String instant) {
+		return TimeUnit.SECONDS.toMinutes(ZonedDateTime.parse(instant).toEpochSecond());
+	}
+}